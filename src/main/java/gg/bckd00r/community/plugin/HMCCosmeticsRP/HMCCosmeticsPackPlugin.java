@@ -2,6 +2,8 @@ package gg.bckd00r.community.plugin.HMCCosmeticsRP;
 
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager;
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.generator.MenuYMLGenerator;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.task.GenerationManager;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.task.InputWatcher;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.command.CommandManager;
@@ -17,6 +19,8 @@ public final class HMCCosmeticsPackPlugin extends JavaPlugin {
     private DataManager dataManager;
     private CommandManager commandManager;
     private CustomModelDataGenerator modelDataGenerator;
+    private GenerationManager generationManager;
+    private InputWatcher inputWatcher;
 
     @Override
     public void onEnable() {
@@ -28,7 +32,8 @@ public final class HMCCosmeticsPackPlugin extends JavaPlugin {
         
         // Initialize managers
         this.configManager = new ConfigManager(this);
-        this.dataManager = new DataManager(this);
+        this.dataManager = new DataManager(this, configManager);
+        this.dataManager.startAutoFlush();
         
         // Create required directories on startup
         createRequiredDirectories();
@@ -36,6 +41,10 @@ public final class HMCCosmeticsPackPlugin extends JavaPlugin {
         // Initialize model data generator
         this.modelDataGenerator = new CustomModelDataGenerator(this);
         
+        // Initialize background generation executor
+        this.generationManager = new GenerationManager(this);
+        this.inputWatcher = new InputWatcher(this);
+        
         // Initialize command manager and register command
         this.commandManager = new CommandManager(this);
         getCommand("hmcpack").setExecutor(commandManager);
@@ -46,6 +55,16 @@ public final class HMCCosmeticsPackPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (inputWatcher != null) {
+            inputWatcher.stop();
+        }
+        if (generationManager != null) {
+            generationManager.shutdown();
+        }
+        // After the generation has stopped, so its last changes are written too
+        if (dataManager != null) {
+            dataManager.shutdown();
+        }
         getLogger().info("HMCCosmeticsRP has been disabled!");
     }
     
@@ -89,6 +108,22 @@ public final class HMCCosmeticsPackPlugin extends JavaPlugin {
         return modelDataGenerator;
     }
     
+    /**
+     * Get the generation manager
+     * @return The generation manager instance
+     */
+    public GenerationManager getGenerationManager() {
+        return generationManager;
+    }
+    
+    /**
+     * Get the input directory watcher
+     * @return The input watcher instance
+     */
+    public InputWatcher getInputWatcher() {
+        return inputWatcher;
+    }
+    
     /**
      * Generate menu files for cosmetics
      * @param namespace The namespace for the cosmetics
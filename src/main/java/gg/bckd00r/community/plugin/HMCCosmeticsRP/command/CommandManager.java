@@ -4,10 +4,11 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.HMCCosmeticsPackPlugin;
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.config.ConfigManager;
-import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.BBModelToJsonConvert;
-import gg.bckd00r.community.plugin.HMCCosmeticsRP.generator.CosmeticYMLGenerator;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DisplayTransform;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.config.ModelDataRegistry;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.generator.DisplayPatcher;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackUtils;
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.util.FileUtils;
-import gg.bckd00r.community.plugin.HMCCosmeticsRP.util.Utils;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -18,44 +19,29 @@ import org.bukkit.plugin.Plugin;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 public class CommandManager implements CommandExecutor, TabCompleter {
+    // Models per page of /hmcpack data list
+    private static final int LIST_PAGE_SIZE = 10;
+    // Most model names offered at once by tab completion
+    private static final int MAX_COMPLETIONS = 50;
+    private static final List<String> DISPLAY_TYPES = Arrays.asList("head", "firstperson_righthand", "thirdperson_righthand",
+        "firstperson_lefthand", "thirdperson_lefthand", "gui", "ground", "fixed");
+    private static final List<String> BULK_OPERATIONS = Arrays.asList("set", "add", "multiply");
     private final HMCCosmeticsPackPlugin plugin;
     private final ConfigManager configManager;
-    
-    // Supported cosmetic types
-    private static final List<String> SUPPORTED_COSMETIC_TYPES = Arrays.asList(
-        "HELMET", "BACKPACK", "CHESTPLATE", "LEGGINGS", "BOOTS", "OFFHAND", "BALLOON"
-    );
 
     public CommandManager(HMCCosmeticsPackPlugin plugin) {
         this.plugin = plugin;
         this.configManager = plugin.getConfigManager();
     }
-    
-    /**
-     * Checks if a model filename contains a valid cosmetic type
-     * @param fileName The filename without .bbmodel extension
-     * @return true if the filename contains a supported cosmetic type
-     */
-    private boolean isValidCosmeticModel(String fileName) {
-        // Remove _firstperson suffix for validation
-        String baseName = fileName.replace("_firstperson", "");
-        String[] nameParts = baseName.split("_");
-        
-        for (String part : nameParts) {
-            if (SUPPORTED_COSMETIC_TYPES.contains(part.toUpperCase())) {
-                return true;
-            }
-        }
-        return false;
-    }
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
@@ -76,7 +62,25 @@ public class CommandManager implements CommandExecutor, TabCompleter {
                     sendNoPermission(sender);
                     return true;
                 }
-                handleGenerate(sender);
+                if (args.length > 1 && args[1].equalsIgnoreCase("cancel")) {
+                    plugin.getGenerationManager().cancel(sender);
+                } else {
+                    boolean fullRebuild = args.length > 1 && args[1].equalsIgnoreCase("full");
+                    plugin.getGenerationManager().start(sender, fullRebuild);
+                }
+                break;
+                
+            case "watch":
+                if (!sender.hasPermission("hmcpack.generate")) {
+                    sendNoPermission(sender);
+                    return true;
+                }
+                if (plugin.getInputWatcher().isRunning()) {
+                    plugin.getInputWatcher().stop();
+                    sender.sendMessage(ChatColor.YELLOW + "Watch mode disabled.");
+                } else {
+                    plugin.getInputWatcher().start(sender);
+                }
                 break;
                 
             case "reload":
@@ -103,6 +107,14 @@ public class CommandManager implements CommandExecutor, TabCompleter {
                 handleSendData(sender);
                 break;
                 
+            case "ids":
+                if (!sender.hasPermission("hmcpack.generate")) {
+                    sendNoPermission(sender);
+                    return true;
+                }
+                handleIds(sender, args);
+                break;
+                
             default:
                 sendHelp(sender);
                 break;
@@ -114,278 +126,31 @@ public class CommandManager implements CommandExecutor, TabCompleter {
     private void sendHelp(CommandSender sender) {
         sender.sendMessage(ChatColor.GOLD + "=== HMCCosmeticsRP Help ===");
         sender.sendMessage(ChatColor.YELLOW + "/hmcpack generate " + ChatColor.WHITE + "- Generate resource pack and YML configs from .bbmodel files");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack generate full " + ChatColor.WHITE + "- Rebuild every model, ignoring unchanged ones from the last run");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack generate cancel " + ChatColor.WHITE + "- Cancel the running generation");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack watch " + ChatColor.WHITE + "- Toggle automatic generation when files in input/ change");
         sender.sendMessage(ChatColor.YELLOW + "/hmcpack reload " + ChatColor.WHITE + "- Reload the plugin configuration");
         sender.sendMessage(ChatColor.YELLOW + "/hmcpack senddata " + ChatColor.WHITE + "- Send YML files from temp to cosmetics directory");
-        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data list " + ChatColor.WHITE + "- List all models in data.yml");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack ids " + ChatColor.WHITE + "- Show how many custom model data IDs are in use and reserved");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack ids compact " + ChatColor.WHITE + "- Free the IDs of models removed since the last generation");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data list [page] [filter] " + ChatColor.WHITE + "- List models in data.yml, 10 per page");
         sender.sendMessage(ChatColor.YELLOW + "/hmcpack data show <model> " + ChatColor.WHITE + "- Show model display settings");
-        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data set <model> <display> <property> <x> <y> <z> " + ChatColor.WHITE + "- Set model display values");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data set <model> <display> <property> <x> <y> <z> [apply] " + ChatColor.WHITE + "- Set model display values");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data bulk <pattern> <display> <property> <set|add|multiply> <x> <y> <z> [apply] " + ChatColor.WHITE + "- Change all matching models at once");
         sender.sendMessage(ChatColor.YELLOW + "/hmcpack data reset <model> " + ChatColor.WHITE + "- Reset model to default values");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data <import|export> " + ChatColor.WHITE + "- Move models between data.yml and data.log");
     }
     
     private void sendNoPermission(CommandSender sender) {
         sender.sendMessage(ChatColor.RED + "You don't have permission to use this command!");
     }
     
-    private void handleGenerate(CommandSender sender) {
-        // Get input directory
-        File inputDir = new File(plugin.getDataFolder(), "input");
-        if (!inputDir.exists() || !inputDir.isDirectory()) {
-            inputDir.mkdirs();
-            sender.sendMessage(ChatColor.YELLOW + "Input directory not found, created one at: " + inputDir.getAbsolutePath());
-            sender.sendMessage(ChatColor.YELLOW + "Please place your .bbmodel files in the input directory.");
-            return;
-        }
-        
-        // Process all .bbmodel files
-        File[] bbmodelFiles = inputDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".bbmodel"));
-        if (bbmodelFiles == null || bbmodelFiles.length == 0) {
-            sender.sendMessage(ChatColor.YELLOW + "No .bbmodel files found in the input directory.");
-            return;
-        }
-        
-        // Separate main models from firstperson models
-        Map<String, File> mainModels = new HashMap<>();
-        Map<String, File> firstpersonModels = new HashMap<>();
-        int skippedCount = 0;
-        
-        for (File file : bbmodelFiles) {
-            String fileName = file.getName().replace(".bbmodel", "");
-            
-            // Validate if this is a supported cosmetic model
-            if (!isValidCosmeticModel(fileName)) {
-                sender.sendMessage(ChatColor.RED + "Skipped " + file.getName() + " - no valid cosmetic type found (supported: " + 
-                    String.join(", ", SUPPORTED_COSMETIC_TYPES.stream().map(String::toLowerCase).collect(Collectors.toList())) + ")");
-                skippedCount++;
-                continue;
-            }
-            
-            if (fileName.endsWith("_firstperson")) {
-                String baseName = fileName.replace("_firstperson", "");
-                firstpersonModels.put(baseName, file);
-                Utils.debugMessage(sender, ChatColor.AQUA + "Found firstperson model: " + fileName + " for " + baseName);
-            } else {
-                mainModels.put(fileName, file);
-            }
-        }
-        
-        if (skippedCount > 0) {
-            sender.sendMessage(ChatColor.YELLOW + "Skipped " + skippedCount + " invalid model file(s).");
-        }
-        
-        if (mainModels.isEmpty()) {
-            sender.sendMessage(ChatColor.RED + "No valid cosmetic models found to process!");
+    private void handleReload(CommandSender sender) {
+        // A running job reads the namespace, pack target and data store as it goes
+        if (plugin.getGenerationManager().isRunning()) {
+            sender.sendMessage(ChatColor.RED + "A generation is running, wait for it to finish before reloading");
             return;
         }
-        
-        sender.sendMessage(ChatColor.GOLD + "=== Starting Clean Generation Process ===");
-        sender.sendMessage(ChatColor.YELLOW + "Step 1: Cleaning old files...");
-        
-        // Reset custom model data generator to clear any previous state
-        if (configManager.useCustomModelData()) {
-            plugin.getModelDataGenerator().reset();
-        }
-        
-        String packId = configManager.getResourcePackId();
-        File localOutputDir = new File(plugin.getDataFolder(), "output/" + packId);
-        
-        // Clean up old files before generation
-        cleanupOldFiles(localOutputDir, sender);
-        
-        sender.sendMessage(ChatColor.YELLOW + "Step 2: Generating files locally...");
-        
-        // Create LOCAL output directories first
-        String localModelsPath = localOutputDir.getAbsolutePath() + "/assets/" + configManager.getNamespace() + "/models/item/";
-        String localTexturesPath = localOutputDir.getAbsolutePath() + "/assets/" + configManager.getNamespace() + "/textures/item/";
-        String localItemsPath = localOutputDir.getAbsolutePath() + "/assets/" + configManager.getNamespace() + "/items/";
-        
-        try {
-            Files.createDirectories(Paths.get(localModelsPath));
-            Files.createDirectories(Paths.get(localTexturesPath));
-            Files.createDirectories(Paths.get(localItemsPath));
-            sender.sendMessage(ChatColor.GREEN + "✓ Created output directories");
-        } catch (IOException e) {
-            sender.sendMessage(ChatColor.RED + "Failed to create output directories: " + e.getMessage());
-            return;
-        }
-        
-        // Initialize YML generator
-        CosmeticYMLGenerator ymlGenerator = new CosmeticYMLGenerator(plugin, configManager.getNamespace());
-        
-        // Counters for different types
-        int helmetCount = 0;
-        int backpackCount = 0;
-        int chestplateCount = 0;
-        int leggingsCount = 0;
-        int bootsCount = 0;
-        int offhandCount = 0;
-        int balloonCount = 0;
-        int otherCount = 0;
-        
-        // Map to track processed files by type
-        Map<String, Integer> processedCounts = new HashMap<>();
-        
-        int successCount = 0;
-        
-        // Process all models (main models will be processed with their firstperson variants)
-        for (Map.Entry<String, File> entry : mainModels.entrySet()) {
-            String modelName = entry.getKey();
-            File bbmodelFile = entry.getValue();
-            
-            try {
-                String localOutputJsonPath = localModelsPath + modelName + ".json";
-                
-                // Convert BBModel to JSON (to LOCAL directory first)
-                BBModelToJsonConvert.convert(
-                    bbmodelFile.getAbsolutePath(),
-                    localOutputJsonPath,
-                    localTexturesPath,
-                    configManager.getNamespace()
-                );
-                
-                // Check if this model has a firstperson version
-                File firstpersonFile = firstpersonModels.get(modelName);
-                if (firstpersonFile != null) {
-                    Utils.debugMessage(sender, ChatColor.GREEN + "Processing " + modelName + " with firstperson variant");
-                    
-                    // Convert firstperson model too
-                    String firstpersonJsonPath = localModelsPath + modelName + "_firstperson.json";
-                    BBModelToJsonConvert.convert(
-                        firstpersonFile.getAbsolutePath(),
-                        firstpersonJsonPath,
-                        localTexturesPath,
-                        configManager.getNamespace()
-                    );
-                }
-                
-                try {
-                    // Generate YML data and get the type using the converted JSON file
-                    File jsonFile = new File(localOutputJsonPath);
-                    String type = ymlGenerator.generateYMLFiles(jsonFile, firstpersonFile != null);
-                    
-                    // Check if type is null (file was skipped)
-                    if (type == null) {
-                        plugin.getLogger().warning("Skipped processing " + modelName + " - no valid cosmetic type found");
-                        continue;
-                    }
-                    
-                    // Process firstperson model separately if it exists
-                    if (firstpersonFile != null) {
-                        try {
-                            String firstpersonJsonPath = localModelsPath + modelName + "_firstperson.json";
-                            File firstpersonJsonFile = new File(firstpersonJsonPath);
-                            if (firstpersonJsonFile.exists()) {
-                                // Process firstperson model like any other model
-                                plugin.getLogger().info("Processing firstperson model: " + modelName + "_firstperson");
-                                ymlGenerator.loadAndProcessModel(firstpersonJsonFile, modelName + "_firstperson");
-                                plugin.getLogger().info("Successfully processed firstperson model: " + modelName + "_firstperson");
-                            } else {
-                                plugin.getLogger().warning("Firstperson JSON file not found: " + firstpersonJsonPath);
-                            }
-                        } catch (Exception e) {
-                            plugin.getLogger().warning("Failed to process firstperson model for " + modelName + ": " + e.getMessage());
-                            e.printStackTrace();
-                        }
-                    }
-                    
-                    // Count the type
-                    processedCounts.merge(type.toLowerCase(), 1, Integer::sum);
-                    
-                    switch (type.toUpperCase()) {
-                        case "HELMET":
-                            helmetCount++;
-                            break;
-                        case "BACKPACK":
-                            backpackCount++;
-                            break;
-                        case "CHESTPLATE":
-                            chestplateCount++;
-                            break;
-                        case "LEGGINGS":
-                            leggingsCount++;
-                            break;
-                        case "BOOTS":
-                            bootsCount++;
-                            break;
-                        case "OFFHAND":
-                            offhandCount++;
-                            break;
-                        case "BALLOON":
-                            balloonCount++;
-                            break;
-                        default:
-                            otherCount++;
-                            break;
-                    }
-                } catch (Exception e) {
-                    sender.sendMessage(ChatColor.RED + "Error processing " + bbmodelFile.getName() + ": " + e.getMessage());
-                    plugin.getLogger().severe("Error processing " + bbmodelFile.getName() + ": " + e.getMessage());
-                    continue;
-                }
-                
-                successCount++;
-                
-            } catch (Exception e) {
-                sender.sendMessage(ChatColor.RED + "Error processing " + bbmodelFile.getName() + ": " + e.getMessage());
-            }
-        }
-        
-        // Save all cosmetics to their respective type files
-        ymlGenerator.saveAllCosmetics();
-        
-        // Generate custom model data files if enabled
-        if (configManager.useCustomModelData()) {
-            Utils.debugMessage(sender, ChatColor.YELLOW + "Generating legacy custom model data files...");
-            plugin.getModelDataGenerator().generateModelJsons();
-            Utils.debugMessage(sender, ChatColor.GREEN + "✓ Legacy custom model data files generated");
-        }
-
-        Utils.debugMessage(sender, ChatColor.GREEN + "✓ Step 2 Complete: All files generated locally");
-        Utils.debugMessage(sender, ChatColor.YELLOW + "Step 3: Copying changed files to target output...");
-        
-        // Now copy only changed files from local output to final output
-        int copiedFiles = copyChangedFilesToOutput(localOutputDir, sender);
-        
-        if (copiedFiles > 0) {
-            Utils.debugMessage(sender, ChatColor.GREEN + "✓ Step 3 Complete: Copied " + copiedFiles + " changed files to target output");
-        } else {
-            Utils.debugMessage(sender, ChatColor.YELLOW + "✓ Step 3 Complete: No files needed copying (all up to date)");
-        }
-        
-        // Send summary
-        sender.sendMessage(ChatColor.GOLD + "=== Generation Complete ===");
-        sender.sendMessage(ChatColor.GREEN + "Successfully processed " + ChatColor.YELLOW + successCount + 
-                         ChatColor.GREEN + " models:");
-        
-        if (helmetCount > 0) sender.sendMessage(ChatColor.YELLOW + "- Helmets: " + ChatColor.WHITE + helmetCount);
-        if (backpackCount > 0) sender.sendMessage(ChatColor.YELLOW + "- Backpacks: " + ChatColor.WHITE + backpackCount);
-        if (chestplateCount > 0) sender.sendMessage(ChatColor.YELLOW + "- Chestplates: " + ChatColor.WHITE + chestplateCount);
-        if (leggingsCount > 0) sender.sendMessage(ChatColor.YELLOW + "- Leggings: " + ChatColor.WHITE + leggingsCount);
-        if (bootsCount > 0) sender.sendMessage(ChatColor.YELLOW + "- Boots: " + ChatColor.WHITE + bootsCount);
-        if (balloonCount > 0) sender.sendMessage(ChatColor.YELLOW + "- Balloons: " + ChatColor.WHITE + balloonCount);
-        if (offhandCount > 0) sender.sendMessage(ChatColor.YELLOW + "- Offhand Items: " + ChatColor.WHITE + offhandCount);
-        if (otherCount > 0) sender.sendMessage(ChatColor.YELLOW + "- Other: " + ChatColor.WHITE + otherCount);
-        
-        // Show saved files
-        sender.sendMessage(ChatColor.GOLD + "Saved to files:");
-        for (Map.Entry<String, Integer> entry : processedCounts.entrySet()) {
-            sender.sendMessage(ChatColor.YELLOW + "- " + entry.getKey() + ".yml: " + 
-                             ChatColor.WHITE + entry.getValue() + " items");
-        }
-        
-        // Copy files to hooks if needed
-        // copyToHooks(sender);
-        
-        // Copy the generated pack to the transfer-to-path if specified
-        // MOVED TO END: This ensures all files including firstperson namespace items are copied
-        // Use the correct transfer method that uses 'resource-pack.transfer-to-path' config
-        gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackUtils.copyResourcePackToExternalPath();
-        // Note: copyResourcePackToExternalPath() handles its own success/failure messaging
-        
-        sender.sendMessage(ChatColor.GREEN + "All cosmetics have been processed and saved successfully!");
-        sender.sendMessage(ChatColor.GREEN + "Please reinstall the Resource Pack.");
-    }
-    
-    private void handleReload(CommandSender sender) {
         try {
             configManager.loadConfig();
             plugin.getDataManager().loadData(); // Reload data.yml as well
@@ -405,7 +170,7 @@ public class CommandManager implements CommandExecutor, TabCompleter {
         
         switch (subCommand) {
             case "list":
-                handleDataList(sender);
+                handleDataList(sender, args);
                 break;
                 
             case "show":
@@ -418,11 +183,22 @@ public class CommandManager implements CommandExecutor, TabCompleter {
                 
             case "set":
                 if (args.length < 8) {
-                    sender.sendMessage(ChatColor.RED + "Usage: /hmcpack data set <model> <display> <property> <x> <y> <z>");
-                    sender.sendMessage(ChatColor.YELLOW + "Example: /hmcpack data set samurai_backpack head translation 0 -10 0");
+                    sender.sendMessage(ChatColor.RED + "Usage: /hmcpack data set <model> <display> <property> <x> <y> <z> [apply]");
+                    sender.sendMessage(ChatColor.YELLOW + "Example: /hmcpack data set samurai_backpack head translation 0 -10 0 apply");
+                    return;
+                }
+                handleDataSet(sender, args[2], args[3], args[4], args[5], args[6], args[7],
+                    args.length >= 9 && args[8].equalsIgnoreCase("apply"));
+                break;
+                
+            case "bulk":
+                if (args.length < 9) {
+                    sender.sendMessage(ChatColor.RED + "Usage: /hmcpack data bulk <pattern> <display> <property> <set|add|multiply> <x> <y> <z> [apply]");
+                    sender.sendMessage(ChatColor.YELLOW + "Example: /hmcpack data bulk *_backpack head scale multiply 1.2 1.2 1.2");
                     return;
                 }
-                handleDataSet(sender, args[2], args[3], args[4], args[5], args[6], args[7]);
+                handleDataBulk(sender, args[2], args[3], args[4], args[5], args[6], args[7], args[8],
+                    args.length >= 10 && args[9].equalsIgnoreCase("apply"));
                 break;
                 
             case "reset":
@@ -433,6 +209,14 @@ public class CommandManager implements CommandExecutor, TabCompleter {
                 handleDataReset(sender, args[2]);
                 break;
                 
+            case "import":
+                handleDataImport(sender);
+                break;
+                
+            case "export":
+                handleDataExport(sender);
+                break;
+                
             default:
                 sendDataHelp(sender);
                 break;
@@ -441,60 +225,99 @@ public class CommandManager implements CommandExecutor, TabCompleter {
     
     private void sendDataHelp(CommandSender sender) {
         sender.sendMessage(ChatColor.GOLD + "=== Data Management Commands ===");
-        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data list " + ChatColor.WHITE + "- List all models");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data list [page] [filter] " + ChatColor.WHITE + "- List models (filter: *_backpack, _helmet or part of a name)");
         sender.sendMessage(ChatColor.YELLOW + "/hmcpack data show <model> " + ChatColor.WHITE + "- Show model settings");
-        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data set <model> <display> <property> <x> <y> <z> " + ChatColor.WHITE + "- Set values");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data set <model> <display> <property> <x> <y> <z> [apply] " + ChatColor.WHITE + "- Set values, apply patches the generated pack");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data bulk <pattern> <display> <property> <set|add|multiply> <x> <y> <z> [apply] " + ChatColor.WHITE + "- Change every matching model (pattern: *_backpack, _helmet...)");
         sender.sendMessage(ChatColor.YELLOW + "/hmcpack data reset <model> " + ChatColor.WHITE + "- Reset to defaults");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data import " + ChatColor.WHITE + "- Copy data.yml into data.log (log storage)");
+        sender.sendMessage(ChatColor.YELLOW + "/hmcpack data export " + ChatColor.WHITE + "- Write data.log out as data-export.yml (log storage)");
         sender.sendMessage(ChatColor.GRAY + "Display types: head, head, firstperson_righthand, thirdperson_righthand, etc.");
         sender.sendMessage(ChatColor.GRAY + "Properties: translation, rotation, scale");
     }
     
-    private void handleDataList(CommandSender sender) {
+    private void handleDataImport(CommandSender sender) {
+        if (!configManager.isLogDataStorage()) {
+            sender.sendMessage(ChatColor.YELLOW + "data.yml is the active storage, set data-storage: log to import it into data.log");
+            return;
+        }
+        if (!new File(plugin.getDataFolder(), "data.yml").exists()) {
+            sender.sendMessage(ChatColor.RED + "data.yml not found in the plugin folder");
+            return;
+        }
+        try {
+            int imported = plugin.getDataManager().importYaml();
+            sender.sendMessage(ChatColor.GREEN + "✓ Imported " + imported + " model(s) from data.yml into data.log");
+        } catch (IOException e) {
+            sender.sendMessage(ChatColor.RED + "Failed to import data.yml: " + e.getMessage());
+        }
+    }
+    
+    private void handleDataExport(CommandSender sender) {
+        if (!configManager.isLogDataStorage()) {
+            sender.sendMessage(ChatColor.YELLOW + "data.yml is the active storage, there is nothing to export");
+            return;
+        }
+        // Never data.yml itself, a later import or switch back to yaml should not lose hand edits by surprise
+        File target = new File(plugin.getDataFolder(), "data-export.yml");
         try {
-            Map<String, gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager.ModelData> models = plugin.getDataManager().getAllModels();
+            int exported = plugin.getDataManager().exportYaml(target);
+            sender.sendMessage(ChatColor.GREEN + "✓ Exported " + exported + " model(s) to " + target.getName());
+            sender.sendMessage(ChatColor.GRAY + "Rename it to data.yml to use it with data-storage: yaml");
+        } catch (IOException e) {
+            sender.sendMessage(ChatColor.RED + "Failed to export data.log: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Lists one page of models, optionally filtered
+     * Arguments in any order: a page number, and a filter ("_helmet" for a type suffix, other text matches inside the name)
+     */
+    private void handleDataList(CommandSender sender, String[] args) {
+        try {
+            int page = 1;
+            String filter = null;
+            for (int i = 2; i < args.length; i++) {
+                try {
+                    page = Math.max(1, Integer.parseInt(args[i]));
+                } catch (NumberFormatException e) {
+                    filter = args[i];
+                }
+            }
             
-            if (models.isEmpty()) {
-                sender.sendMessage(ChatColor.YELLOW + "No models found in data.yml. Generate some models first!");
+            List<String> names = plugin.getDataManager().findModelNames(filter);
+            if (names.isEmpty()) {
+                if (filter != null) {
+                    sender.sendMessage(ChatColor.YELLOW + "No models match '" + filter + "'");
+                } else {
+                    sender.sendMessage(ChatColor.YELLOW + "No models found in " + plugin.getDataManager().getStorageFileName() + ". Generate some models first!");
+                }
                 return;
             }
             
-            sender.sendMessage(ChatColor.GOLD + "=== Models in data.yml (" + models.size() + ") ===");
-            
-            // Separate main models and firstperson models
-            java.util.List<String> mainModels = new java.util.ArrayList<>();
-            java.util.List<String> firstpersonModels = new java.util.ArrayList<>();
+            int pages = (names.size() + LIST_PAGE_SIZE - 1) / LIST_PAGE_SIZE;
+            page = Math.min(page, pages);
+            String title = filter != null ? " matching '" + filter + "'" : "";
+            sender.sendMessage(ChatColor.GOLD + "=== Models in " + plugin.getDataManager().getStorageFileName() + title +
+                " (" + names.size() + ") - Page " + page + "/" + pages + " ===");
             
-            for (String modelName : models.keySet()) {
+            // Only the models on this page are read, the log storage decodes nothing else
+            int end = Math.min(page * LIST_PAGE_SIZE, names.size());
+            for (String modelName : names.subList((page - 1) * LIST_PAGE_SIZE, end)) {
+                int displayCount = plugin.getDataManager().getModelData(modelName).getDisplayCount();
                 if (modelName.endsWith("_firstperson")) {
-                    firstpersonModels.add(modelName);
+                    String baseName = modelName.replace("_firstperson", "");
+                    sender.sendMessage(ChatColor.LIGHT_PURPLE + "• " + ChatColor.WHITE + modelName + 
+                        ChatColor.GRAY + " (" + displayCount + " display settings) [FP: " + baseName + "]");
                 } else {
-                    mainModels.add(modelName);
-                }
-            }
-            
-            // Show main models
-            if (!mainModels.isEmpty()) {
-                sender.sendMessage(ChatColor.AQUA + "Main Models:");
-                for (String modelName : mainModels) {
-                    gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager.ModelData modelData = models.get(modelName);
-                    int displayCount = modelData.getDisplayData().size();
                     sender.sendMessage(ChatColor.YELLOW + "• " + ChatColor.WHITE + modelName + 
                         ChatColor.GRAY + " (" + displayCount + " display settings)");
                 }
             }
             
-            // Show firstperson models
-            if (!firstpersonModels.isEmpty()) {
-                sender.sendMessage(ChatColor.LIGHT_PURPLE + "Firstperson Models:");
-                for (String modelName : firstpersonModels) {
-                    gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager.ModelData modelData = models.get(modelName);
-                    int displayCount = modelData.getDisplayData().size();
-                    String baseName = modelName.replace("_firstperson", "");
-                    sender.sendMessage(ChatColor.YELLOW + "• " + ChatColor.WHITE + modelName + 
-                        ChatColor.GRAY + " (" + displayCount + " display settings) [FP: " + baseName + "]");
-                }
+            if (page < pages) {
+                sender.sendMessage(ChatColor.GRAY + "Use '/hmcpack data list " + (page + 1) + (filter != null ? " " + filter : "") + "' for the next page");
             }
-            
             sender.sendMessage(ChatColor.GRAY + "Use '/hmcpack data show <model>' for details");
             
         } catch (Exception e) {
@@ -506,7 +329,7 @@ public class CommandManager implements CommandExecutor, TabCompleter {
         try {
             gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager.ModelData modelData = plugin.getDataManager().getModelData(modelName);
             
-            if (modelData == null || modelData.getDisplayData().isEmpty()) {
+            if (modelData == null || modelData.isEmpty()) {
                 sender.sendMessage(ChatColor.RED + "Model '" + modelName + "' not found in data.yml");
                 return;
             }
@@ -525,26 +348,16 @@ public class CommandManager implements CommandExecutor, TabCompleter {
                 sender.sendMessage(ChatColor.GRAY + "Type: " + ChatColor.LIGHT_PURPLE + "Firstperson View Model");
             }
             
-            for (Map.Entry<String, Map<String, Object>> displayEntry : modelData.getDisplayData().entrySet()) {
+            for (Map.Entry<String, DisplayTransform> displayEntry : modelData.getDisplays().entrySet()) {
                 String displayType = displayEntry.getKey();
+                DisplayTransform transform = displayEntry.getValue();
                 sender.sendMessage(ChatColor.YELLOW + "Display Type: " + ChatColor.WHITE + displayType);
                 
-                for (Map.Entry<String, Object> propertyEntry : displayEntry.getValue().entrySet()) {
-                    String property = propertyEntry.getKey();
-                    Object value = propertyEntry.getValue();
-                    
-                    String valueStr = "";
-                    if (value instanceof List) {
-                        List<?> list = (List<?>) value;
-                        valueStr = String.format("[%.2f, %.2f, %.2f]", 
-                            ((Number) list.get(0)).doubleValue(),
-                            ((Number) list.get(1)).doubleValue(),
-                            ((Number) list.get(2)).doubleValue());
-                    } else {
-                        valueStr = value.toString();
+                for (int property = DisplayTransform.ROTATION; property <= DisplayTransform.SCALE; property++) {
+                    if (transform.has(property)) {
+                        sender.sendMessage(ChatColor.GRAY + "  " + DisplayTransform.propertyName(property) + ": " +
+                            ChatColor.WHITE + transform.format(property));
                     }
-                    
-                    sender.sendMessage(ChatColor.GRAY + "  " + property + ": " + ChatColor.WHITE + valueStr);
                 }
             }
             
@@ -556,10 +369,16 @@ public class CommandManager implements CommandExecutor, TabCompleter {
     }
     
     private void handleDataSet(CommandSender sender, String modelName, String displayType, String property, 
-                              String xStr, String yStr, String zStr) {
+                              String xStr, String yStr, String zStr, boolean apply) {
         try {
+            if (apply && plugin.getGenerationManager().isRunning()) {
+                sender.sendMessage(ChatColor.RED + "A generation is running, wait for it to finish before applying changes");
+                return;
+            }
+            
             // Validate property
-            if (!property.equals("translation") && !property.equals("rotation") && !property.equals("scale")) {
+            int propertyIndex = DisplayTransform.propertyIndex(property);
+            if (propertyIndex < 0) {
                 sender.sendMessage(ChatColor.RED + "Invalid property! Use: translation, rotation, or scale");
                 return;
             }
@@ -583,23 +402,15 @@ public class CommandManager implements CommandExecutor, TabCompleter {
             }
             
             // Show current value before changing
-            Map<String, Object> currentDisplay = modelData.getDisplayData(displayType);
-            if (currentDisplay.containsKey(property)) {
-                Object currentValue = currentDisplay.get(property);
-                if (currentValue instanceof List) {
-                    List<?> list = (List<?>) currentValue;
-                    sender.sendMessage(ChatColor.GRAY + "Current " + property + ": " + 
-                        String.format("[%.2f, %.2f, %.2f]", 
-                            ((Number) list.get(0)).doubleValue(),
-                            ((Number) list.get(1)).doubleValue(),
-                            ((Number) list.get(2)).doubleValue()));
-                }
+            DisplayTransform currentDisplay = modelData.getDisplay(displayType);
+            if (currentDisplay != null && currentDisplay.has(propertyIndex)) {
+                sender.sendMessage(ChatColor.GRAY + "Current " + property + ": " + currentDisplay.format(propertyIndex));
             }
             
             // Update the value
-            Map<String, Object> displayData = new HashMap<>(currentDisplay);
-            displayData.put(property, Arrays.asList(x, y, z));
-            modelData.addDisplayData(displayType, displayData);
+            DisplayTransform displayData = currentDisplay != null ? currentDisplay.copy() : new DisplayTransform();
+            displayData.set(propertyIndex, x, y, z);
+            modelData.setDisplay(displayType, displayData);
             
             // Save to data.yml
             plugin.getDataManager().updateModelData(modelName, modelData);
@@ -616,18 +427,122 @@ public class CommandManager implements CommandExecutor, TabCompleter {
                 sender.sendMessage(ChatColor.LIGHT_PURPLE + "Note: This is a firstperson view model for " + baseName);
             }
             
-            sender.sendMessage(ChatColor.YELLOW + "Use '/hmcpack generate' to apply changes to JSON files");
+            if (apply) {
+                applyDisplayChange(sender, modelName);
+            } else {
+                sender.sendMessage(ChatColor.YELLOW + "Use '/hmcpack generate' to apply changes to JSON files, or add 'apply' to patch them now");
+            }
             
         } catch (Exception e) {
             sender.sendMessage(ChatColor.RED + "Error setting value: " + e.getMessage());
         }
     }
     
+    /**
+     * Writes the stored overrides of models into the generated pack without a generation
+     */
+    private void applyDisplayChange(CommandSender sender, String modelName) {
+        applyDisplayChanges(sender, Collections.singletonList(modelName),
+            "Model '" + modelName + "' is not in the generated pack yet, use '/hmcpack generate'");
+    }
+    
+    private void applyDisplayChanges(CommandSender sender, Collection<String> modelNames, String notGeneratedMessage) {
+        long startTime = System.currentTimeMillis();
+        try {
+            plugin.getDataManager().flush();
+            List<File> patched = new DisplayPatcher(plugin).apply(modelNames);
+            if (patched.isEmpty()) {
+                sender.sendMessage(ChatColor.YELLOW + notGeneratedMessage);
+                return;
+            }
+            int copied = PackUtils.copyFilesToExternalPath(patched);
+            long elapsed = System.currentTimeMillis() - startTime;
+            sender.sendMessage(ChatColor.GREEN + "✓ Patched " + patched.size() + " model file(s)"
+                + (copied > 0 ? ", copied " + copied + " to the external path" : "") + " in " + elapsed + "ms");
+        } catch (IOException e) {
+            sender.sendMessage(ChatColor.RED + "Could not apply changes: " + e.getMessage());
+            plugin.getLogger().warning("Could not apply display changes: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * /hmcpack data bulk: one transform for every model matching a pattern, stored with a single write
+     */
+    private void handleDataBulk(CommandSender sender, String pattern, String displayType, String property,
+                                String operation, String xStr, String yStr, String zStr, boolean apply) {
+        int propertyIndex = DisplayTransform.propertyIndex(property);
+        if (propertyIndex < 0) {
+            sender.sendMessage(ChatColor.RED + "Invalid property! Use: translation, rotation, or scale");
+            return;
+        }
+        String op = operation.toLowerCase();
+        if (!BULK_OPERATIONS.contains(op)) {
+            sender.sendMessage(ChatColor.RED + "Invalid operation! Use: set, add, or multiply");
+            return;
+        }
+        double x, y, z;
+        try {
+            x = Double.parseDouble(xStr);
+            y = Double.parseDouble(yStr);
+            z = Double.parseDouble(zStr);
+        } catch (NumberFormatException e) {
+            sender.sendMessage(ChatColor.RED + "Invalid coordinates! Use numbers (e.g., 0 -10 0)");
+            return;
+        }
+        if (apply && plugin.getGenerationManager().isRunning()) {
+            sender.sendMessage(ChatColor.RED + "A generation is running, wait for it to finish before applying changes");
+            return;
+        }
+        
+        gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager dataManager = plugin.getDataManager();
+        List<String> names = dataManager.findModelNames(pattern);
+        if (names.isEmpty()) {
+            sender.sendMessage(ChatColor.YELLOW + "No models match '" + pattern + "'");
+            return;
+        }
+        
+        Map<String, gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager.ModelData> changed = new LinkedHashMap<>();
+        for (String name : names) {
+            gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager.ModelData modelData = dataManager.getModelData(name);
+            DisplayTransform current = modelData.getDisplay(displayType);
+            DisplayTransform transform = current != null ? current.copy() : new DisplayTransform();
+            switch (op) {
+                case "add":
+                    transform.add(propertyIndex, x, y, z);
+                    break;
+                case "multiply":
+                    transform.multiply(propertyIndex, x, y, z);
+                    break;
+                default:
+                    transform.set(propertyIndex, x, y, z);
+                    break;
+            }
+            modelData.setDisplay(displayType, transform);
+            changed.put(name, modelData);
+        }
+        
+        try {
+            dataManager.updateModelData(changed);
+        } catch (IOException e) {
+            sender.sendMessage(ChatColor.RED + "Could not save " + dataManager.getStorageFileName() + ": " + e.getMessage());
+            plugin.getLogger().warning("Could not save bulk display changes: " + e.getMessage());
+            return;
+        }
+        sender.sendMessage(ChatColor.GREEN + "✓ " + op + " " + displayType + "." + property + " [" + x + ", " + y + ", " + z
+            + "] on " + changed.size() + " model(s) matching '" + pattern + "'");
+        
+        if (apply) {
+            applyDisplayChanges(sender, changed.keySet(), "None of the matching models are in the generated pack yet, use '/hmcpack generate'");
+        } else {
+            sender.sendMessage(ChatColor.YELLOW + "Use '/hmcpack generate' to rebuild only these models, or add 'apply' to patch them now");
+        }
+    }
+    
     private void handleDataReset(CommandSender sender, String modelName) {
         try {
             gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager.ModelData modelData = plugin.getDataManager().getModelData(modelName);
             
-            if (modelData == null || modelData.getDisplayData().isEmpty()) {
+            if (modelData == null || modelData.isEmpty()) {
                 sender.sendMessage(ChatColor.RED + "Model '" + modelName + "' not found in data.yml");
                 return;
             }
@@ -636,21 +551,17 @@ public class CommandManager implements CommandExecutor, TabCompleter {
             gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager.ModelData originalModelData = 
                 getOriginalModelDisplayData(modelName);
             
-            if (originalModelData != null && !originalModelData.getDisplayData().isEmpty()) {
+            if (originalModelData != null && !originalModelData.isEmpty()) {
                 // Use original display data from .bbmodel/.json file
                 plugin.getDataManager().updateModelData(modelName, originalModelData);
                 sender.sendMessage(ChatColor.GREEN + "✓ Reset " + modelName + " to original .bbmodel display values");
-                sender.sendMessage(ChatColor.GRAY + "Restored " + originalModelData.getDisplayData().size() + " display configurations");
+                sender.sendMessage(ChatColor.GRAY + "Restored " + originalModelData.getDisplayCount() + " display configurations");
             } else {
                 // Fallback to default values if original file not found
                 gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager.ModelData newModelData = 
                     new gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager.ModelData();
                 
-                Map<String, Object> headDisplay = new HashMap<>();
-                headDisplay.put("rotation", Arrays.asList(0.0, 0.0, 0.0));
-                headDisplay.put("translation", Arrays.asList(0.0, 0.0, 0.0));
-                headDisplay.put("scale", Arrays.asList(1.0, 1.0, 1.0));
-                newModelData.addDisplayData("head", headDisplay);
+                newModelData.setDisplay("head", DisplayTransform.identity());
                 
                 plugin.getDataManager().updateModelData(modelName, newModelData);
                 sender.sendMessage(ChatColor.YELLOW + "⚠ Original .bbmodel file not found for " + modelName);
@@ -710,7 +621,7 @@ public class CommandManager implements CommandExecutor, TabCompleter {
                 plugin.getDataManager().ensureModelExists(modelName, modelJson);
             
             plugin.getLogger().info("Successfully extracted original display data for: " + modelName);
-            plugin.getLogger().info("Original display data: " + originalData.getDisplayData().toString());
+            plugin.getLogger().info("Original display data: " + originalData.getDisplays().toString());
             
             return originalData;
             
@@ -728,12 +639,28 @@ public class CommandManager implements CommandExecutor, TabCompleter {
         
         // Main command completions
         if (args.length == 1) {
-            return Arrays.asList("generate", "reload", "senddata", "data")
+            return Arrays.asList("generate", "watch", "reload", "senddata", "data", "ids")
                 .stream()
                 .filter(s -> s.toLowerCase().startsWith(args[0].toLowerCase()))
                 .collect(Collectors.toList());
         }
         
+        // Generate command completions
+        if (args.length == 2 && args[0].equalsIgnoreCase("generate")) {
+            return Arrays.asList("full", "cancel")
+                .stream()
+                .filter(s -> s.toLowerCase().startsWith(args[1].toLowerCase()))
+                .collect(Collectors.toList());
+        }
+        
+        // Ids command completions
+        if (args.length == 2 && args[0].equalsIgnoreCase("ids")) {
+            return Arrays.asList("compact")
+                .stream()
+                .filter(s -> s.toLowerCase().startsWith(args[1].toLowerCase()))
+                .collect(Collectors.toList());
+        }
+        
         // Data command completions
         if (args.length >= 2 && args[0].equalsIgnoreCase("data")) {
             return getDataTabCompletions(sender, args);
@@ -745,7 +672,7 @@ public class CommandManager implements CommandExecutor, TabCompleter {
     private List<String> getDataTabCompletions(CommandSender sender, String[] args) {
         // /hmcpack data <subcommand>
         if (args.length == 2) {
-            return Arrays.asList("list", "show", "set", "reset")
+            return Arrays.asList("list", "show", "set", "bulk", "reset", "import", "export")
                 .stream()
                 .filter(s -> s.toLowerCase().startsWith(args[1].toLowerCase()))
                 .collect(Collectors.toList());
@@ -757,16 +684,14 @@ public class CommandManager implements CommandExecutor, TabCompleter {
             return getModelNames(args[2]);
         }
         
-        // /hmcpack data set <model> <display> <property> <x> <y> <z>
+        // /hmcpack data set <model> <display> <property> <x> <y> <z> [apply]
         if (args[1].equalsIgnoreCase("set")) {
             if (args.length == 3) {
                 // Model name completion
                 return getModelNames(args[2]);
             } else if (args.length == 4) {
                 // Display type completion
-                return Arrays.asList("head", "firstperson_righthand", "thirdperson_righthand", 
-                                   "firstperson_lefthand", "thirdperson_lefthand", "gui", "ground", "fixed")
-                    .stream()
+                return DISPLAY_TYPES.stream()
                     .filter(s -> s.toLowerCase().startsWith(args[3].toLowerCase()))
                     .collect(Collectors.toList());
             } else if (args.length == 5) {
@@ -778,6 +703,28 @@ public class CommandManager implements CommandExecutor, TabCompleter {
             } else if (args.length >= 6 && args.length <= 8) {
                 // Coordinate completions - show current values if available
                 return getCurrentCoordinateCompletions(args[2], args[3], args[4], args.length - 6);
+            } else if (args.length == 9) {
+                return "apply".startsWith(args[8].toLowerCase()) ? Arrays.asList("apply") : null;
+            }
+        }
+        
+        // /hmcpack data bulk <pattern> <display> <property> <set|add|multiply> <x> <y> <z> [apply]
+        if (args[1].equalsIgnoreCase("bulk")) {
+            if (args.length == 4) {
+                return DISPLAY_TYPES.stream()
+                    .filter(s -> s.startsWith(args[3].toLowerCase()))
+                    .collect(Collectors.toList());
+            } else if (args.length == 5) {
+                return Arrays.asList("translation", "rotation", "scale")
+                    .stream()
+                    .filter(s -> s.startsWith(args[4].toLowerCase()))
+                    .collect(Collectors.toList());
+            } else if (args.length == 6) {
+                return BULK_OPERATIONS.stream()
+                    .filter(s -> s.startsWith(args[5].toLowerCase()))
+                    .collect(Collectors.toList());
+            } else if (args.length == 10) {
+                return "apply".startsWith(args[9].toLowerCase()) ? Arrays.asList("apply") : null;
             }
         }
         
@@ -785,17 +732,7 @@ public class CommandManager implements CommandExecutor, TabCompleter {
     }
     
     private List<String> getModelNames(String partial) {
-        try {
-            Map<String, gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager.ModelData> models = 
-                plugin.getDataManager().getAllModels();
-            
-            return models.keySet()
-                .stream()
-                .filter(name -> name.toLowerCase().startsWith(partial.toLowerCase()))
-                .collect(Collectors.toList());
-        } catch (Exception e) {
-            return Arrays.asList();
-        }
+        return plugin.getDataManager().completeModelNames(partial, MAX_COMPLETIONS);
     }
     
     private List<String> getCurrentCoordinateCompletions(String modelName, String displayType, String property, int coordinateIndex) {
@@ -803,17 +740,11 @@ public class CommandManager implements CommandExecutor, TabCompleter {
             gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager.ModelData modelData = 
                 plugin.getDataManager().getModelData(modelName);
             
-            if (modelData != null && !modelData.getDisplayData().isEmpty()) {
-                Map<String, Object> displayData = modelData.getDisplayData(displayType);
-                if (displayData.containsKey(property)) {
-                    Object value = displayData.get(property);
-                    if (value instanceof List) {
-                        List<?> list = (List<?>) value;
-                        if (coordinateIndex < list.size()) {
-                            String currentValue = String.valueOf(((Number) list.get(coordinateIndex)).doubleValue());
-                            return Arrays.asList(currentValue);
-                        }
-                    }
+            if (modelData != null && !modelData.isEmpty()) {
+                DisplayTransform displayData = modelData.getDisplay(displayType);
+                int propertyIndex = DisplayTransform.propertyIndex(property);
+                if (displayData != null && propertyIndex >= 0 && displayData.has(propertyIndex) && coordinateIndex < 3) {
+                    return Arrays.asList(String.valueOf(displayData.get(propertyIndex, coordinateIndex)));
                 }
             }
             
@@ -834,130 +765,39 @@ public class CommandManager implements CommandExecutor, TabCompleter {
     }
     
     /**
-     * Copies only changed files from local output to target output directory
-     * @param localOutputDir The local output directory containing generated files
-     * @param sender Command sender for feedback
-     * @return Number of files copied
-     */
-    private int copyChangedFilesToOutput(File localOutputDir, CommandSender sender) {
-        int copiedFiles = 0;
-        
-        try {
-            // Get the final output directory paths
-            String finalModelsPath = configManager.getModelsPath();
-            String finalTexturesPath = configManager.getFullTexturesPath();
-            
-            // Create final output directories if they don't exist
-            Files.createDirectories(Paths.get(finalModelsPath));
-            Files.createDirectories(Paths.get(finalTexturesPath));
-            
-            // Copy models directory
-            File localModelsDir = new File(localOutputDir, "assets/" + configManager.getNamespace() + "/models");
-            if (localModelsDir.exists()) {
-                copiedFiles += copyChangedFilesRecursively(localModelsDir, new File(finalModelsPath).getParentFile(), sender);
-            }
-            
-            // Copy textures directory
-            File localTexturesDir = new File(localOutputDir, "assets/" + configManager.getNamespace() + "/textures");
-            if (localTexturesDir.exists()) {
-                copiedFiles += copyChangedFilesRecursively(localTexturesDir, new File(finalTexturesPath).getParentFile(), sender);
-            }
-            
-            // Copy other resource pack files (pack.mcmeta, etc.)
-            File[] rootFiles = localOutputDir.listFiles();
-            if (rootFiles != null) {
-                for (File file : rootFiles) {
-                    if (file.isFile()) {
-                        File targetFile = new File(configManager.getOutputPath() + "/" + configManager.getResourcePackId(), file.getName());
-                        if (isFileChanged(file, targetFile)) {
-                            Files.copy(file.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                            sender.sendMessage(ChatColor.GRAY + "  → Copied " + file.getName());
-                            copiedFiles++;
-                        }
-                    }
-                }
-            }
-            
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.RED + "Error copying files to target output: " + e.getMessage());
-            plugin.getLogger().severe("Error copying files to target output: " + e.getMessage());
-        }
-        
-        return copiedFiles;
-    }
-    
-    /**
-     * Recursively copies changed files from source to target directory
+     * Shows or compacts the custom model data ID registry (model-data.yml)
+     * IDs of removed models stay reserved until compacted, so players with an old pack never see a wrong model
      */
-    private int copyChangedFilesRecursively(File sourceDir, File targetDir, CommandSender sender) throws IOException {
-        int copiedFiles = 0;
-        
-        if (!sourceDir.exists() || !sourceDir.isDirectory()) {
-            return 0;
+    private void handleIds(CommandSender sender, String[] args) {
+        if (plugin.getGenerationManager().isRunning()) {
+            sender.sendMessage(ChatColor.RED + "A generation is running, try again when it has finished.");
+            return;
         }
         
-        Files.createDirectories(targetDir.toPath());
-        
-        File[] files = sourceDir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                File targetFile = new File(targetDir, file.getName());
-                
-                if (file.isDirectory()) {
-                    // Recursively copy subdirectories
-                    copiedFiles += copyChangedFilesRecursively(file, targetFile, sender);
-                } else {
-                    // Check if file has changed and copy if needed
-                    if (isFileChanged(file, targetFile)) {
-                        Files.copy(file.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                        String relativePath = sourceDir.getName() + "/" + file.getName();
-                        sender.sendMessage(ChatColor.GRAY + "  → Copied " + relativePath);
-                        copiedFiles++;
-                    }
+        ModelDataRegistry registry = plugin.getModelDataGenerator().getRegistry();
+        if (args.length > 1 && args[1].equalsIgnoreCase("compact")) {
+            try {
+                int freed = plugin.getModelDataGenerator().compactIds();
+                sender.sendMessage(ChatColor.GREEN + "Freed " + freed + " custom model data ID(s), " + registry.size() + " remain assigned.");
+                if (freed > 0) {
+                    sender.sendMessage(ChatColor.YELLOW + "New models may now reuse these IDs, make sure no player still uses an old pack.");
                 }
+            } catch (IOException e) {
+                sender.sendMessage(ChatColor.RED + "Failed to save model-data.yml: " + e.getMessage());
+                plugin.getLogger().warning("Failed to compact model-data.yml: " + e.getMessage());
             }
+            return;
         }
         
-        return copiedFiles;
-    }
-    
-    /**
-     * Checks if a source file is different from target file (or target doesn't exist)
-     */
-    private boolean isFileChanged(File sourceFile, File targetFile) {
-        try {
-            // If target doesn't exist, file is "changed"
-            if (!targetFile.exists()) {
-                return true;
-            }
-            
-            // Compare file sizes first (quick check)
-            if (sourceFile.length() != targetFile.length()) {
-                return true;
-            }
-            
-            // Compare last modified times
-            if (sourceFile.lastModified() > targetFile.lastModified()) {
-                return true;
-            }
-            
-            // For small files, compare content to be sure
-            if (sourceFile.length() < 1024 * 1024) { // Files smaller than 1MB
-                byte[] sourceBytes = Files.readAllBytes(sourceFile.toPath());
-                byte[] targetBytes = Files.readAllBytes(targetFile.toPath());
-                return !Arrays.equals(sourceBytes, targetBytes);
-            }
-            
-            // For larger files, trust size and timestamp
-            return false;
-            
-        } catch (Exception e) {
-            // If we can't compare, assume it's changed
-            plugin.getLogger().warning("Could not compare files " + sourceFile.getName() + " and " + targetFile.getName() + ": " + e.getMessage());
-            return true;
+        registry.load();
+        int inUse = registry.countInUse();
+        sender.sendMessage(ChatColor.GOLD + "=== Custom Model Data IDs ===");
+        sender.sendMessage(ChatColor.YELLOW + "In use: " + ChatColor.WHITE + inUse);
+        sender.sendMessage(ChatColor.YELLOW + "Reserved by removed models: " + ChatColor.WHITE + (registry.size() - inUse));
+        if (registry.size() > inUse) {
+            sender.sendMessage(ChatColor.GRAY + "Use '/hmcpack ids compact' to free reserved IDs");
         }
     }
-
     
     private void handleSendData(CommandSender sender) {
         File tempDir = new File(plugin.getDataFolder(), "temp/" + configManager.getNamespace());
@@ -1010,58 +850,4 @@ public class CommandManager implements CommandExecutor, TabCompleter {
             sender.sendMessage(ChatColor.RED + "Error sending files: " + e.getMessage());
         }
     }
-    
-    /**
-     * Cleans up old files before generation to ensure fresh start
-     * @param localOutputDir The local output directory to clean
-     * @param sender Command sender for feedback
-     */
-    private void cleanupOldFiles(File localOutputDir, CommandSender sender) {
-        try {
-            // Delete old LOCAL output directory (plugin's own directory)
-            if (localOutputDir.exists()) {
-                sender.sendMessage(ChatColor.YELLOW + "  → Deleting old local output directory...");
-                deleteDirectoryRecursively(localOutputDir.toPath());
-                sender.sendMessage(ChatColor.GREEN + "  ✓ Deleted old local output directory");
-            }
-            
-            // Delete old cosmetic YML files
-            File cosmeticsDir = new File(plugin.getDataFolder(), "cosmetics");
-            if (cosmeticsDir.exists()) {
-                sender.sendMessage(ChatColor.YELLOW + "  → Deleting old cosmetic YML files...");
-                deleteDirectoryRecursively(cosmeticsDir.toPath());
-                sender.sendMessage(ChatColor.GREEN + "  ✓ Deleted old cosmetic YML files");
-            }
-            
-            sender.sendMessage(ChatColor.GREEN + "✓ Step 1 Complete: Plugin directories cleaned");
-            sender.sendMessage(ChatColor.GRAY + "  (Custom output path left untouched for safety)");
-            
-        } catch (Exception e) {
-            sender.sendMessage(ChatColor.RED + "Error cleaning up old files: " + e.getMessage());
-            plugin.getLogger().severe("Error cleaning up old files: " + e.getMessage());
-        }
-    }
-    
-    /**
-     * Recursively deletes a directory and all its contents
-     * @param path The path to delete
-     * @throws IOException If an I/O error occurs
-     */
-    private void deleteDirectoryRecursively(Path path) throws IOException {
-        if (Files.exists(path)) {
-            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    Files.delete(file);
-                    return FileVisitResult.CONTINUE;
-                }
-                
-                @Override
-                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-                    Files.delete(dir);
-                    return FileVisitResult.CONTINUE;
-                }
-            });
-        }
-    }
 }
@@ -0,0 +1,251 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.config;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Fingerprints of the last generation, stored in manifest.yml next to data.yml
+ * A model whose fingerprint did not change is not converted again, its files in the output directory are reused
+ */
+public class BuildManifest {
+    private final File manifestFile;
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * @param dataFolder The plugin data folder, the manifest is kept next to data.yml
+     */
+    public BuildManifest(File dataFolder) {
+        this.manifestFile = new File(dataFolder, "manifest.yml");
+    }
+
+    /**
+     * Loads the manifest from disk, a missing or unreadable manifest is treated as empty
+     */
+    public void load() {
+        entries.clear();
+        if (!manifestFile.exists()) {
+            return;
+        }
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(manifestFile);
+        ConfigurationSection modelsSection = config.getConfigurationSection("models");
+        if (modelsSection == null) {
+            return;
+        }
+
+        for (String modelName : modelsSection.getKeys(false)) {
+            ConfigurationSection section = modelsSection.getConfigurationSection(modelName);
+            if (section == null) {
+                continue;
+            }
+            Entry entry = new Entry();
+            entry.source = section.getString("source");
+            entry.sourceSize = section.getLong("source-size");
+            entry.sourceModified = section.getLong("source-modified");
+            entry.firstpersonSource = section.getString("firstperson-source");
+            entry.firstpersonSize = section.getLong("firstperson-size");
+            entry.firstpersonModified = section.getLong("firstperson-modified");
+            entry.overrides = section.getString("overrides");
+            entry.settings = section.getString("settings");
+            entry.paintable = section.getBoolean("paintable");
+            entry.outputs = new ArrayList<>(section.getStringList("outputs"));
+            entries.put(modelName, entry);
+        }
+    }
+
+    /**
+     * Writes the manifest to disk
+     * @throws IOException If the manifest could not be written
+     */
+    public void save() throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            String path = "models." + mapEntry.getKey();
+            Entry entry = mapEntry.getValue();
+            config.set(path + ".source", entry.source);
+            config.set(path + ".source-size", entry.sourceSize);
+            config.set(path + ".source-modified", entry.sourceModified);
+            if (entry.firstpersonSource != null) {
+                config.set(path + ".firstperson-source", entry.firstpersonSource);
+                config.set(path + ".firstperson-size", entry.firstpersonSize);
+                config.set(path + ".firstperson-modified", entry.firstpersonModified);
+            }
+            config.set(path + ".overrides", entry.overrides);
+            config.set(path + ".settings", entry.settings);
+            config.set(path + ".paintable", entry.paintable);
+            config.set(path + ".outputs", entry.outputs);
+        }
+        config.save(manifestFile);
+    }
+
+    public Entry get(String modelName) {
+        return entries.get(modelName);
+    }
+
+    public void put(String modelName, Entry entry) {
+        entries.put(modelName, entry);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    /**
+     * Hashes a source file, reusing the previous hash when size and modification time are unchanged
+     * @param file The file to hash
+     * @param previousHash The hash stored in the manifest, or null
+     * @param previousSize The size stored in the manifest
+     * @param previousModified The modification time stored in the manifest
+     * @return The SHA-256 of the file as hex
+     */
+    public static String hashSource(File file, String previousHash, long previousSize, long previousModified) throws IOException {
+        if (previousHash != null && file.length() == previousSize && file.lastModified() == previousModified) {
+            return previousHash;
+        }
+
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return The SHA-256 of the given text as hex
+     */
+    public static String hash(String text) {
+        return toHex(newDigest().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Fingerprint and generated files of one main model and its firstperson variant
+     */
+    public static class Entry {
+        private String source;
+        private long sourceSize;
+        private long sourceModified;
+        private String firstpersonSource;
+        private long firstpersonSize;
+        private long firstpersonModified;
+        private String overrides;
+        private String settings;
+        private boolean paintable;
+        private List<String> outputs = new ArrayList<>();
+
+        public String getSource() {
+            return source;
+        }
+
+        public void setSource(String source, File file) {
+            this.source = source;
+            this.sourceSize = file.length();
+            this.sourceModified = file.lastModified();
+        }
+
+        public long getSourceSize() {
+            return sourceSize;
+        }
+
+        public long getSourceModified() {
+            return sourceModified;
+        }
+
+        public String getFirstpersonSource() {
+            return firstpersonSource;
+        }
+
+        public void setFirstpersonSource(String firstpersonSource, File file) {
+            this.firstpersonSource = firstpersonSource;
+            this.firstpersonSize = file.length();
+            this.firstpersonModified = file.lastModified();
+        }
+
+        public long getFirstpersonSize() {
+            return firstpersonSize;
+        }
+
+        public long getFirstpersonModified() {
+            return firstpersonModified;
+        }
+
+        public String getOverrides() {
+            return overrides;
+        }
+
+        public void setOverrides(String overrides) {
+            this.overrides = overrides;
+        }
+
+        public String getSettings() {
+            return settings;
+        }
+
+        public void setSettings(String settings) {
+            this.settings = settings;
+        }
+
+        public boolean isPaintable() {
+            return paintable;
+        }
+
+        public void setPaintable(boolean paintable) {
+            this.paintable = paintable;
+        }
+
+        /**
+         * @return Generated files of this model, relative to assets/&lt;namespace&gt;
+         */
+        public List<String> getOutputs() {
+            return outputs;
+        }
+
+        /**
+         * @return true if both entries were built from the same sources, overrides and settings
+         */
+        public boolean hasSameFingerprint(Entry other) {
+            return other != null
+                && Objects.equals(source, other.source)
+                && Objects.equals(firstpersonSource, other.firstpersonSource)
+                && Objects.equals(overrides, other.overrides)
+                && Objects.equals(settings, other.settings);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package gg.bckd00r.community.plugin.HMCCosmeticsRP.config;
 
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackTarget;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -23,6 +24,22 @@ public class ConfigManager {
     // Model format settings
     private boolean useItemModelComponent = true;
     private int customModelDataStart = 1000;
+    private PackTarget packTarget = PackTarget.BOTH;
+    private String dataStorage = "yaml";
+    
+    // Generation settings
+    private int generationThreads = 0;
+    private int tickBudgetMillis = 0;
+    private boolean workerProcess = false;
+    private int workerHeapMb = 1024;
+    private boolean incrementalGeneration = true;
+    private int watchDebounceSeconds = 3;
+    private boolean optimizeTextures = false;
+    private boolean optimizeGeometry = false;
+    private boolean compactJson = false;
+    private boolean textureAtlas = false;
+    private int atlasMaxTextureSize = 64;
+    private int atlasSheetSize = 1024;
     
     // Bedrock Edition support
     private boolean bedrockEnabled  = false;
@@ -49,6 +66,20 @@ public class ConfigManager {
         config.addDefault("settings.transfer-generated-cosmetic-yml-files", transferGeneratedCosmeticYmlFiles);
         config.addDefault("settings.use-item-model-component", useItemModelComponent);
         config.addDefault("settings.custom-model-data-start", customModelDataStart);
+        config.addDefault("settings.pack-target", packTarget.name().toLowerCase());
+        config.addDefault("settings.data-storage", dataStorage);
+        config.addDefault("settings.generation-threads", generationThreads);
+        config.addDefault("settings.tick-budget-ms", tickBudgetMillis);
+        config.addDefault("settings.worker-process", workerProcess);
+        config.addDefault("settings.worker-heap-mb", workerHeapMb);
+        config.addDefault("settings.incremental-generation", incrementalGeneration);
+        config.addDefault("settings.watch-debounce-seconds", watchDebounceSeconds);
+        config.addDefault("settings.optimize-textures", optimizeTextures);
+        config.addDefault("settings.optimize-geometry", optimizeGeometry);
+        config.addDefault("settings.compact-json", compactJson);
+        config.addDefault("settings.texture-atlas", textureAtlas);
+        config.addDefault("settings.atlas-max-texture-size", atlasMaxTextureSize);
+        config.addDefault("settings.atlas-sheet-size", atlasSheetSize);
         
         // Add default materials configuration
         Map<String, String> defaultMaterialMap = new HashMap<>();
@@ -90,6 +121,35 @@ public class ConfigManager {
         // Load model format settings
         useItemModelComponent = config.getBoolean("settings.use-item-model-component", true);
         customModelDataStart = config.getInt("settings.custom-model-data-start", 1000);
+        String packTargetValue = config.getString("settings.pack-target", "both");
+        packTarget = PackTarget.parse(packTargetValue);
+        if (packTarget == null) {
+            plugin.getLogger().warning("Unknown pack-target '" + packTargetValue + "', expected modern, legacy or both. Using both.");
+            packTarget = PackTarget.BOTH;
+        } else if (packTarget == PackTarget.LEGACY && useItemModelComponent) {
+            plugin.getLogger().warning("pack-target: legacy needs use-item-model-component: false, item models require 1.21.4+. Using both.");
+            packTarget = PackTarget.BOTH;
+        }
+        
+        dataStorage = config.getString("settings.data-storage", "yaml").trim().toLowerCase();
+        if (!dataStorage.equals("yaml") && !dataStorage.equals("log")) {
+            plugin.getLogger().warning("Unknown data-storage '" + dataStorage + "', expected yaml or log. Using yaml.");
+            dataStorage = "yaml";
+        }
+        
+        // Load generation settings
+        generationThreads = config.getInt("settings.generation-threads", 0);
+        tickBudgetMillis = Math.max(0, Math.min(40, config.getInt("settings.tick-budget-ms", 0)));
+        workerProcess = config.getBoolean("settings.worker-process", false);
+        workerHeapMb = Math.max(128, config.getInt("settings.worker-heap-mb", 1024));
+        incrementalGeneration = config.getBoolean("settings.incremental-generation", true);
+        watchDebounceSeconds = config.getInt("settings.watch-debounce-seconds", 3);
+        optimizeTextures = config.getBoolean("settings.optimize-textures", false);
+        optimizeGeometry = config.getBoolean("settings.optimize-geometry", false);
+        compactJson = config.getBoolean("settings.compact-json", false);
+        textureAtlas = config.getBoolean("settings.texture-atlas", false);
+        atlasMaxTextureSize = config.getInt("settings.atlas-max-texture-size", 64);
+        atlasSheetSize = config.getInt("settings.atlas-sheet-size", 1024);
         
         // DISABLED: Bedrock Edition support - always false
         bedrockEnabled = false;
@@ -165,6 +225,122 @@ public class ConfigManager {
         return customModelDataStart;
     }
 
+    /**
+     * Gets the client versions the pack is generated for
+     * @return The pack target, decides the pack.mcmeta formats and which custom model data files are written
+     */
+    public PackTarget getPackTarget() {
+        return packTarget;
+    }
+
+    /**
+     * Gets whether display overrides are kept in the data.log append-only log instead of data.yml
+     * @return true for the log storage, false for data.yml
+     */
+    public boolean isLogDataStorage() {
+        return dataStorage.equals("log");
+    }
+
+    /**
+     * Gets the number of worker threads used to convert models in parallel
+     * @return The configured thread count, or one less than the available processors if set to 0 or below
+     */
+    public int getGenerationThreads() {
+        if (generationThreads > 0) {
+            return generationThreads;
+        }
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * Gets how long a generation may run per server tick in tick-budget mode
+     * @return The budget in milliseconds (at most 40, a tick is 50), or 0 to generate on a background thread
+     */
+    public int getTickBudgetMillis() {
+        return tickBudgetMillis;
+    }
+
+    /**
+     * Gets whether models are converted in a separate JVM instead of on the server heap
+     * @return true to start a conversion worker process for each generation
+     */
+    public boolean isWorkerProcess() {
+        return workerProcess;
+    }
+
+    /**
+     * Gets the largest heap of the conversion worker process
+     * @return The heap limit in megabytes, at least 128
+     */
+    public int getWorkerHeapMb() {
+        return workerHeapMb;
+    }
+
+    /**
+     * Gets whether generation only reconverts models whose fingerprint changed
+     * @return true to reuse unchanged models from the previous output, false to rebuild everything
+     */
+    public boolean isIncrementalGeneration() {
+        return incrementalGeneration;
+    }
+
+    /**
+     * Gets how long the input directory must be quiet before watch mode starts a generation
+     * @return The debounce time in milliseconds, at least one second
+     */
+    public long getWatchDebounceMillis() {
+        return Math.max(1, watchDebounceSeconds) * 1000L;
+    }
+
+    /**
+     * Gets whether extracted textures are losslessly re-encoded to make the pack smaller
+     * @return true if textures are optimized during generation
+     */
+    public boolean isOptimizeTextures() {
+        return optimizeTextures;
+    }
+
+    /**
+     * Gets whether converted models are cleaned of hidden faces and mergeable cubes
+     * @return true if the geometry optimizer runs during conversion
+     */
+    public boolean isOptimizeGeometry() {
+        return optimizeGeometry;
+    }
+
+    /**
+     * Gets whether pack JSON files are written minified
+     * @return true if models, item definitions and metadata are written without whitespace and defaults
+     */
+    public boolean isCompactJson() {
+        return compactJson;
+    }
+
+    /**
+     * Gets whether small textures of converted models are packed into shared atlas sheets
+     * @return true if the atlas stage runs during generation
+     */
+    public boolean isTextureAtlas() {
+        return textureAtlas;
+    }
+
+    /**
+     * Gets the largest texture width or height that is still packed into an atlas sheet
+     * @return The size in pixels, between 1 and the sheet size
+     */
+    public int getAtlasMaxTextureSize() {
+        return Math.max(1, Math.min(atlasMaxTextureSize, getAtlasSheetSize()));
+    }
+
+    /**
+     * Gets the largest width and height of an atlas sheet, rounded up to a power of two
+     * @return The sheet size in pixels, between 16 and 4096
+     */
+    public int getAtlasSheetSize() {
+        int size = Math.max(16, Math.min(atlasSheetSize, 4096));
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
     /**
      * Gets the base output directory for models and textures
      * @return Path to the output directory
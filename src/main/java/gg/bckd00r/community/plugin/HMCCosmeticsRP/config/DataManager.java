@@ -1,186 +1,310 @@
 package gg.bckd00r.community.plugin.HMCCosmeticsRP.config;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
 
 public class DataManager {
+    // Changes are written at most this often, a generation also flushes when it finishes
+    private static final long FLUSH_INTERVAL_TICKS = 100L;
+
     private final JavaPlugin plugin;
-    private File dataFile;
-    private FileConfiguration dataConfig;
-    private final Map<String, ModelData> modelOverrides = new HashMap<>();
+    private final ConfigManager configManager;
+    private ModelDataStore store;
+    // Sorted lower case names of all stored models, read without locking by tab completion
+    private final ConcurrentSkipListSet<String> modelNames = new ConcurrentSkipListSet<>();
+    private BukkitTask flushTask;
 
-    public DataManager(JavaPlugin plugin) {
+    public DataManager(JavaPlugin plugin, ConfigManager configManager) {
         this.plugin = plugin;
+        this.configManager = configManager;
         loadData();
     }
 
-    public void loadData() {
-        dataFile = new File(plugin.getDataFolder(), "data.yml");
-        if (!dataFile.exists()) {
-            plugin.saveResource("data.yml", false);
+    /**
+     * Opens the storage selected by data-storage, on reload the storage may change
+     * The first time the log storage is used, the models of data.yml are imported into it
+     */
+    public synchronized void loadData() {
+        // Unsaved changes would be lost by reading the file again
+        flush();
+        File dataFile = new File(plugin.getDataFolder(), "data.yml");
+
+        if (configManager.isLogDataStorage()) {
+            File logFile = new File(plugin.getDataFolder(), "data.log");
+            boolean firstUse = !logFile.exists();
+            store = new LogModelDataStore(logFile, plugin.getLogger());
+            loadStore();
+            if (firstUse && dataFile.exists()) {
+                try {
+                    int imported = importYaml();
+                    plugin.getLogger().info("Imported " + imported + " model(s) from data.yml into data.log");
+                } catch (IOException e) {
+                    plugin.getLogger().severe("Could not import data.yml into data.log: " + e.getMessage());
+                }
+            }
+        } else {
+            if (!dataFile.exists()) {
+                plugin.saveResource("data.yml", false);
+            }
+            store = new YamlModelDataStore(dataFile);
+            loadStore();
         }
-        
-        dataConfig = YamlConfiguration.loadConfiguration(dataFile);
-        loadModelOverrides();
-        
-        for (ModelData modelData : modelOverrides.values()) {
-            modelData.setForceUpdate(true);
+        modelNames.clear();
+        modelNames.addAll(store.getModelNames());
+    }
+
+    private void loadStore() {
+        try {
+            store.load();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not load " + store.getFileName() + ", changes will not be saved: " + e.getMessage());
         }
     }
 
-    private void loadModelOverrides() {
-        modelOverrides.clear();
-        if (!dataFile.exists()) {
+    /**
+     * Writes the stored data now, whether or not the timer has run yet
+     */
+    public void saveData() {
+        flush();
+    }
+
+    /**
+     * Writes unsaved changes of the storage
+     */
+    public synchronized void flush() {
+        if (store == null) {
             return;
         }
+        try {
+            store.flush();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not save " + store.getFileName() + ": " + e.getMessage());
+        }
+    }
 
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(dataFile);
-        
-        ConfigurationSection modelsSection = config.getConfigurationSection("models");
-        if (modelsSection == null) {
-            return;
+    /**
+     * Copies every model of data.yml into the active storage, models with the same name are replaced
+     * @return The number of imported models
+     * @throws IOException If the storage could not be written
+     */
+    public synchronized int importYaml() throws IOException {
+        YamlModelDataStore yaml = new YamlModelDataStore(new File(plugin.getDataFolder(), "data.yml"));
+        yaml.load();
+        for (String modelName : yaml.getModelNames()) {
+            store.put(modelName, yaml.get(modelName));
+            modelNames.add(modelName.toLowerCase());
         }
-        
-        for (String modelName : modelsSection.getKeys(false)) {
-            ConfigurationSection modelSection = modelsSection.getConfigurationSection(modelName);
-            if (modelSection != null) {
-                ModelData modelData = new ModelData();
-                
-                ConfigurationSection displaySection = modelSection.getConfigurationSection("display");
-                if (displaySection != null) {
-                    for (String displayType : displaySection.getKeys(false)) {
-                        if (displaySection.isConfigurationSection(displayType)) {
-                            ConfigurationSection typeSection = displaySection.getConfigurationSection(displayType);
-                            Map<String, Object> displayData = new HashMap<>();
-                            for (String key : typeSection.getKeys(false)) {
-                                Object value = typeSection.get(key);
-                                if (value != null) {
-                                    displayData.put(key, value);
-                                }
-                            }
-                            if (!displayData.isEmpty()) {
-                                modelData.addDisplayData(displayType, displayData);
-                            }
-                        }
-                    }
-                }
-                
-                if (!modelData.getDisplayData().isEmpty()) {
-                    modelOverrides.put(modelName.toLowerCase(), modelData);
-                }
+        store.flush();
+        return yaml.size();
+    }
+
+    /**
+     * Writes every model of the active storage to a data.yml file
+     * @param target The YAML file to write, replaced completely
+     * @return The number of exported models
+     * @throws IOException If the file could not be written
+     */
+    public synchronized int exportYaml(File target) throws IOException {
+        YamlModelDataStore yaml = new YamlModelDataStore(target);
+        for (String modelName : store.getModelNames()) {
+            ModelData modelData = store.get(modelName);
+            if (modelData != null) {
+                yaml.put(modelName, modelData);
             }
         }
+        yaml.flush();
+        return yaml.size();
     }
 
-    public void saveData() {
-        try {
-            dataConfig.save(dataFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Could not save data.yml: " + e.getMessage());
+    /**
+     * @return The file name of the active storage (data.yml or data.log)
+     */
+    public synchronized String getStorageFileName() {
+        return store.getFileName();
+    }
+
+    /**
+     * Starts the timer that writes changed data in the background
+     */
+    public void startAutoFlush() {
+        if (flushTask == null) {
+            flushTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::flush,
+                FLUSH_INTERVAL_TICKS, FLUSH_INTERVAL_TICKS);
         }
     }
 
-    public ModelData getModelData(String modelName) {
-        String key = modelName.toLowerCase();
-        if (!modelOverrides.containsKey(key)) {
-            // Create a new ModelData if it doesn't exist
-            ModelData modelData = new ModelData();
-            modelOverrides.put(key, modelData);
-            return modelData;
+    /**
+     * Stops the timer and writes any unsaved changes, called when the plugin is disabled
+     */
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
         }
-        return modelOverrides.get(key);
+        flush();
+    }
+
+    /**
+     * @return The stored overrides of the model, or a new empty entry that is not stored until updated
+     */
+    public synchronized ModelData getModelData(String modelName) {
+        ModelData modelData = store.get(modelName);
+        return modelData != null ? modelData : new ModelData();
     }
     
-    public Map<String, ModelData> getAllModels() {
-        return new HashMap<>(modelOverrides);
+    /**
+     * Decodes every stored model, use {@link #getModelNames()} when only the names are needed
+     */
+    public synchronized Map<String, ModelData> getAllModels() {
+        Map<String, ModelData> models = new HashMap<>();
+        for (String modelName : store.getModelNames()) {
+            ModelData modelData = store.get(modelName);
+            if (modelData != null) {
+                models.put(modelName, modelData);
+            }
+        }
+        return models;
+    }
+
+    /**
+     * @return The lower case names of all stored models, sorted
+     */
+    public Collection<String> getModelNames() {
+        return Collections.unmodifiableSet(modelNames);
     }
 
-    private Map<String, Map<String, Object>> extractDisplaySettings(JsonObject modelJson) {
-        Map<String, Map<String, Object>> displaySettings = new HashMap<>();
+    /**
+     * Model names starting with a prefix, found in the sorted index without scanning the others
+     * @param prefix The typed part of the name, case is ignored
+     * @param limit The largest number of names returned
+     * @return Up to limit names in order
+     */
+    public List<String> completeModelNames(String prefix, int limit) {
+        String lowerPrefix = prefix.toLowerCase();
+        List<String> names = new ArrayList<>(Math.min(limit, 16));
+        for (String name : modelNames.tailSet(lowerPrefix)) {
+            if (!name.startsWith(lowerPrefix) || names.size() >= limit) {
+                break;
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    /**
+     * Model names matching a filter, in order
+     * @param filter null for all, a glob with * and ? (e.g. *_backpack, samurai_*), "_type" for names ending
+     *               with it (e.g. _helmet, _firstperson), anything else matches inside the name
+     * @return The matching names
+     */
+    public List<String> findModelNames(String filter) {
+        if (filter == null || filter.isEmpty()) {
+            return new ArrayList<>(modelNames);
+        }
+        String lowerFilter = filter.toLowerCase();
+        Pattern glob = lowerFilter.indexOf('*') >= 0 || lowerFilter.indexOf('?') >= 0 ? globToPattern(lowerFilter) : null;
+        boolean suffix = lowerFilter.startsWith("_");
+        List<String> names = new ArrayList<>();
+        for (String name : modelNames) {
+            boolean matches;
+            if (glob != null) {
+                matches = glob.matcher(name).matches();
+            } else {
+                matches = suffix ? name.endsWith(lowerFilter) : name.contains(lowerFilter);
+            }
+            if (matches) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (i > literalStart) {
+                    regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                }
+                regex.append(c == '*' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literalStart)));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Builds a stable text form of a model's display overrides for the build manifest
+     * Does not create an entry for unknown models
+     * @param modelName The model name
+     * @return The sorted display data, or an empty string if the model has no overrides
+     */
+    public synchronized String getDisplayFingerprint(String modelName) {
+        ModelData modelData = store.get(modelName);
+        if (modelData == null) {
+            return "";
+        }
+        return new TreeMap<>(modelData.getDisplays()).toString();
+    }
+
+    /**
+     * Hash of the overrides of a model and its firstperson variant, as stored in the build manifest
+     * @param modelName The main model name
+     * @param hasFirstperson Whether the model has a firstperson variant
+     */
+    public String getOverridesHash(String modelName, boolean hasFirstperson) {
+        String overrides = getDisplayFingerprint(modelName);
+        if (hasFirstperson) {
+            overrides += "|" + getDisplayFingerprint(modelName + "_firstperson");
+        }
+        return BuildManifest.hash(overrides);
+    }
+
+    private ModelData extractDisplaySettings(JsonObject modelJson) {
+        ModelData modelData = new ModelData();
         
-        if (modelJson == null) {
-            return displaySettings;
+        if (modelJson == null || !modelJson.has("display")) {
+            modelData.setDisplay("head", DisplayTransform.identity());
+            return modelData;
         }
         
-        if (modelJson.has("display")) {
-            JsonObject displayObj = modelJson.getAsJsonObject("display");
-            
-            for (String displayType : displayObj.keySet()) {
-                
-                if (displayObj.get(displayType).isJsonObject()) {
-                    JsonObject typeObj = displayObj.getAsJsonObject(displayType);
-                    Map<String, Object> settings = new HashMap<>();
-                    
-                    for (String key : Arrays.asList("rotation", "translation", "scale")) {
-                        if (typeObj.has(key)) {
-                            JsonElement element = typeObj.get(key);
-                            
-                            if (element.isJsonArray()) {
-                                JsonArray array = element.getAsJsonArray();
-                                List<Double> values = Arrays.asList(
-                                    array.size() > 0 ? array.get(0).getAsDouble() : 0.0,
-                                    array.size() > 1 ? array.get(1).getAsDouble() : 0.0,
-                                    array.size() > 2 ? array.get(2).getAsDouble() : 0.0
-                                );
-                                settings.put(key, values);
-                            }
-                        }
-                    }
-                    
-                    if (!settings.isEmpty()) {
-                        displaySettings.put(displayType, settings);
-                    }
+        JsonObject displayObj = modelJson.getAsJsonObject("display");
+        for (String displayType : displayObj.keySet()) {
+            if (displayObj.get(displayType).isJsonObject()) {
+                DisplayTransform transform = DisplayTransform.fromJson(displayObj.getAsJsonObject(displayType));
+                if (!transform.isEmpty()) {
+                    modelData.setDisplay(displayType, transform);
                 }
             }
-        } else {
-            Map<String, Object> headSettings = new HashMap<>();
-            headSettings.put("rotation", Arrays.asList(0.0, 0.0, 0.0));
-            headSettings.put("translation", Arrays.asList(0.0, 0.0, 0.0));
-            headSettings.put("scale", Arrays.asList(1.0, 1.0, 1.0));
-            displaySettings.put("head", headSettings);
         }
-        
-        return displaySettings;
+        return modelData;
     }
     
-    public ModelData ensureModelExists(String modelName, JsonObject modelJson) {
-        ModelData modelData = modelOverrides.get(modelName.toLowerCase());
-        boolean isNewModel = (modelData == null);
+    public synchronized ModelData ensureModelExists(String modelName, JsonObject modelJson) {
+        ModelData modelData = store.get(modelName);
         
-        if (isNewModel) {
-            modelData = new ModelData();
-            
-            if (modelJson != null) {
-                Map<String, Map<String, Object>> displaySettings = extractDisplaySettings(modelJson);
-                
-                if (!displaySettings.isEmpty()) {
-                    for (Map.Entry<String, Map<String, Object>> entry : displaySettings.entrySet()) {
-                        modelData.addDisplayData(entry.getKey(), entry.getValue());
-                    }
-                }
-                
-                updateModelData(modelName, modelData);
-            } else {
-                Map<String, Object> headDisplay = new HashMap<>();
-                headDisplay.put("rotation", Arrays.asList(0.0, 0.0, 0.0));
-                headDisplay.put("translation", Arrays.asList(0.0, 0.0, 0.0));
-                headDisplay.put("scale", Arrays.asList(1.0, 1.0, 1.0));
-                modelData.addDisplayData("head", headDisplay);
-                
-                updateModelData(modelName, modelData);
-            }
+        if (modelData == null) {
+            modelData = extractDisplaySettings(modelJson);
+            updateModelData(modelName, modelData);
         } else {
             modelData.setForceUpdate(true);
         }
@@ -192,49 +316,78 @@ public class DataManager {
         return ensureModelExists(modelName, null);
     }
     
-    public void updateModelData(String modelName, ModelData modelData) {
-        modelOverrides.put(modelName.toLowerCase(), modelData);
-        
-        if (dataConfig == null) {
-            dataConfig = YamlConfiguration.loadConfiguration(dataFile);
-        }
-        
-        if (!dataConfig.contains("models")) {
-            dataConfig.createSection("models");
-        }
-        
-        String basePath = "models." + modelName;
-        
-        dataConfig.set(basePath + ".display", null);
-        
-        for (Map.Entry<String, Map<String, Object>> entry : modelData.getDisplayData().entrySet()) {
-            String displayType = entry.getKey();
-            
-            for (Map.Entry<String, Object> dataEntry : entry.getValue().entrySet()) {
-                String fullPath = basePath + ".display." + displayType + "." + dataEntry.getKey();
-                Object value = dataEntry.getValue();
-                
-                dataConfig.set(fullPath, value);
-            }
+    /**
+     * Stores a model's display data, the storage is written later by {@link #flush()}
+     */
+    public synchronized void updateModelData(String modelName, ModelData modelData) {
+        store.put(modelName, modelData);
+        modelNames.add(modelName.toLowerCase());
+    }
+
+    /**
+     * Stores the display data of many models and writes the storage once for all of them
+     * @param models Model name -> display data
+     * @throws IOException If the storage could not be written, the changes stay queued for the next flush
+     */
+    public synchronized void updateModelData(Map<String, ModelData> models) throws IOException {
+        for (Map.Entry<String, ModelData> entry : models.entrySet()) {
+            store.put(entry.getKey(), entry.getValue());
+            modelNames.add(entry.getKey().toLowerCase());
         }
-        
-        saveData();
+        store.flush();
     }
 
+    /**
+     * Display overrides of one model, one typed transform per display slot
+     * The JSON display object is built once and reused until the overrides change.
+     */
     public static class ModelData {
-        private final Map<String, Map<String, Object>> displayData = new HashMap<>();
+        private final Map<String, DisplayTransform> displays = new LinkedHashMap<>();
+        private JsonObject displayJson;
         private boolean forceUpdate = false;
 
-        public void addDisplayData(String displayType, Map<String, Object> data) {
-            displayData.put(displayType.toLowerCase(), data);
+        public synchronized void setDisplay(String displayType, DisplayTransform transform) {
+            displays.put(displayType.toLowerCase(), transform);
+            displayJson = null;
+        }
+
+        /**
+         * @return The transform of a display slot, or null if the model has no override for it
+         */
+        public synchronized DisplayTransform getDisplay(String displayType) {
+            return displays.get(displayType.toLowerCase());
+        }
+
+        /**
+         * @return The overrides per display slot, read only
+         */
+        public synchronized Map<String, DisplayTransform> getDisplays() {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(displays));
         }
 
-        public Map<String, Map<String, Object>> getDisplayData() {
-            return displayData;
+        public synchronized boolean isEmpty() {
+            return displays.isEmpty();
         }
 
-        public Map<String, Object> getDisplayData(String displayType) {
-            return displayData.getOrDefault(displayType, new HashMap<>());
+        public synchronized int getDisplayCount() {
+            return displays.size();
+        }
+
+        /**
+         * @return The model JSON display object for these overrides, shared between calls and must not be modified
+         */
+        public synchronized JsonObject getDisplayJson() {
+            if (displayJson == null) {
+                JsonObject json = new JsonObject();
+                for (Map.Entry<String, DisplayTransform> entry : displays.entrySet()) {
+                    JsonObject transform = entry.getValue().toJson();
+                    if (transform.size() > 0) {
+                        json.add(entry.getKey(), transform);
+                    }
+                }
+                displayJson = json;
+            }
+            return displayJson;
         }
 
         public void setForceUpdate(boolean forceUpdate) {
@@ -0,0 +1,182 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.config;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The display transform of one slot (head, firstperson_righthand...), rotation, translation and scale
+ * are kept in one primitive array. Only the properties that were set are written back out.
+ */
+public final class DisplayTransform {
+    public static final int ROTATION = 0;
+    public static final int TRANSLATION = 1;
+    public static final int SCALE = 2;
+    // Same order as the indices above, also the order the properties are written in
+    private static final String[] PROPERTIES = {"rotation", "translation", "scale"};
+
+    // [rotation xyz, translation xyz, scale xyz]
+    private final double[] values = new double[9];
+    // Bit per property, set when the property has a value
+    private int present;
+
+    /**
+     * @return A transform with zero rotation and translation and a scale of one
+     */
+    public static DisplayTransform identity() {
+        DisplayTransform transform = new DisplayTransform();
+        transform.set(ROTATION, 0, 0, 0);
+        transform.set(TRANSLATION, 0, 0, 0);
+        transform.set(SCALE, 1, 1, 1);
+        return transform;
+    }
+
+    /**
+     * @param name rotation, translation or scale
+     * @return The property index, or -1 for any other name
+     */
+    public static int propertyIndex(String name) {
+        for (int i = 0; i < PROPERTIES.length; i++) {
+            if (PROPERTIES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static String propertyName(int property) {
+        return PROPERTIES[property];
+    }
+
+    public boolean has(int property) {
+        return (present & (1 << property)) != 0;
+    }
+
+    public double get(int property, int axis) {
+        return values[property * 3 + axis];
+    }
+
+    public void set(int property, double x, double y, double z) {
+        values[property * 3] = x;
+        values[property * 3 + 1] = y;
+        values[property * 3 + 2] = z;
+        present |= 1 << property;
+    }
+
+    /**
+     * Adds an offset to a property, a property that is not set starts from its identity value
+     */
+    public void add(int property, double x, double y, double z) {
+        double base = identityValue(property);
+        set(property, valueOr(property, 0, base) + x, valueOr(property, 1, base) + y, valueOr(property, 2, base) + z);
+    }
+
+    /**
+     * Multiplies a property, a property that is not set starts from its identity value
+     */
+    public void multiply(int property, double x, double y, double z) {
+        double base = identityValue(property);
+        set(property, valueOr(property, 0, base) * x, valueOr(property, 1, base) * y, valueOr(property, 2, base) * z);
+    }
+
+    private double valueOr(int property, int axis, double fallback) {
+        return has(property) ? get(property, axis) : fallback;
+    }
+
+    private static double identityValue(int property) {
+        return property == SCALE ? 1.0 : 0.0;
+    }
+
+    public boolean isEmpty() {
+        return present == 0;
+    }
+
+    public DisplayTransform copy() {
+        DisplayTransform copy = new DisplayTransform();
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        copy.present = present;
+        return copy;
+    }
+
+    /**
+     * Reads a display slot from data.yml, values that are not three numbers are ignored
+     */
+    public static DisplayTransform fromSection(ConfigurationSection section) {
+        DisplayTransform transform = new DisplayTransform();
+        for (int property = 0; property < PROPERTIES.length; property++) {
+            List<?> list = section.getList(PROPERTIES[property]);
+            if (list != null && list.size() >= 3 && list.get(0) instanceof Number
+                    && list.get(1) instanceof Number && list.get(2) instanceof Number) {
+                transform.set(property, ((Number) list.get(0)).doubleValue(),
+                    ((Number) list.get(1)).doubleValue(), ((Number) list.get(2)).doubleValue());
+            }
+        }
+        return transform;
+    }
+
+    /**
+     * Reads a display slot from a model JSON, missing array entries count as 0
+     */
+    public static DisplayTransform fromJson(JsonObject json) {
+        DisplayTransform transform = new DisplayTransform();
+        for (int property = 0; property < PROPERTIES.length; property++) {
+            JsonElement element = json.get(PROPERTIES[property]);
+            if (element != null && element.isJsonArray()) {
+                JsonArray array = element.getAsJsonArray();
+                transform.set(property,
+                    array.size() > 0 ? array.get(0).getAsDouble() : 0.0,
+                    array.size() > 1 ? array.get(1).getAsDouble() : 0.0,
+                    array.size() > 2 ? array.get(2).getAsDouble() : 0.0);
+            }
+        }
+        return transform;
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        for (int property = 0; property < PROPERTIES.length; property++) {
+            if (has(property)) {
+                JsonArray array = new JsonArray();
+                array.add(values[property * 3]);
+                array.add(values[property * 3 + 1]);
+                array.add(values[property * 3 + 2]);
+                json.add(PROPERTIES[property], array);
+            }
+        }
+        return json;
+    }
+
+    /**
+     * @return The properties as lists, the form data.yml stores them in
+     */
+    public Map<String, List<Double>> toYaml() {
+        Map<String, List<Double>> yaml = new LinkedHashMap<>();
+        for (int property = 0; property < PROPERTIES.length; property++) {
+            if (has(property)) {
+                yaml.put(PROPERTIES[property], new ArrayList<>(Arrays.asList(
+                    values[property * 3], values[property * 3 + 1], values[property * 3 + 2])));
+            }
+        }
+        return yaml;
+    }
+
+    /**
+     * @param property The property index
+     * @return The value as "[x, y, z]" with two decimals, for chat output
+     */
+    public String format(int property) {
+        return String.format("[%.2f, %.2f, %.2f]", values[property * 3], values[property * 3 + 1], values[property * 3 + 2]);
+    }
+
+    @Override
+    public String toString() {
+        return toYaml().toString();
+    }
+}
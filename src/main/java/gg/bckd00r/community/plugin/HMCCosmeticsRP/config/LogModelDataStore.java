@@ -0,0 +1,342 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.config;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * The data.log store for large catalogs: an append-only binary log of model records
+ * Loading only reads the record headers into an index, a model is decoded the first time it is asked for.
+ * An update appends one record, the last record of a model wins. When most records are outdated the log
+ * is rewritten with only the live ones (the snapshot) and new records are appended after it again.
+ *
+ * File: int magic, byte version, then records of int length + payload
+ * Payload: name, slot count, per slot: name, property bitmask, three doubles per set property
+ * Strings are an unsigned short byte count followed by UTF-8 bytes.
+ */
+public class LogModelDataStore implements ModelDataStore {
+    private static final int MAGIC = 0x484D4344; // "HMCD"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+    // Rewrite the log when it holds this many records per live model, and at least this many records
+    private static final int COMPACT_RATIO = 2;
+    private static final int COMPACT_MIN_RECORDS = 256;
+
+    private final File logFile;
+    private final Logger logger;
+    // Lower case name -> where the latest record of the model is
+    private final Map<String, Pointer> index = new HashMap<>();
+    // Decoded models, filled on first lookup
+    private final Map<String, DataManager.ModelData> cache = new HashMap<>();
+    // Lower case name -> stored name, models changed since the last flush
+    private final Map<String, String> pending = new LinkedHashMap<>();
+    // Length of the log up to the last complete record
+    private long validLength;
+    private int recordCount;
+    // Set when the log could not be read, it is then never written so nothing is lost
+    private boolean unreadable;
+
+    public LogModelDataStore(File logFile, Logger logger) {
+        this.logFile = logFile;
+        this.logger = logger;
+    }
+
+    @Override
+    public synchronized void load() throws IOException {
+        index.clear();
+        cache.clear();
+        pending.clear();
+        validLength = 0;
+        recordCount = 0;
+        unreadable = false;
+        if (!logFile.exists()) {
+            return;
+        }
+
+        long fileLength = logFile.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            if (fileLength < HEADER_SIZE || in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                unreadable = true;
+                throw new IOException(logFile.getName() + " is not a model data log of this version");
+            }
+
+            long position = HEADER_SIZE;
+            validLength = position;
+            while (position + 4 <= fileLength) {
+                int length = in.readInt();
+                if (length < 2 || position + 4 + length > fileLength) {
+                    break;
+                }
+                int nameLength = in.readUnsignedShort();
+                if (2 + nameLength > length) {
+                    break;
+                }
+                byte[] nameBytes = new byte[nameLength];
+                in.readFully(nameBytes);
+                skipFully(in, length - 2 - nameLength);
+
+                String name = new String(nameBytes, StandardCharsets.UTF_8);
+                index.put(name.toLowerCase(), new Pointer(name, position + 4, length));
+                position += 4 + length;
+                validLength = position;
+                recordCount++;
+            }
+        } catch (EOFException e) {
+            // The length check above makes this a file that shrank while it was read, keep what was indexed
+        }
+
+        if (validLength < fileLength) {
+            logger.warning(logFile.getName() + " ends with an incomplete record, it is dropped on the next save ("
+                + (fileLength - validLength) + " bytes)");
+        }
+    }
+
+    @Override
+    public synchronized DataManager.ModelData get(String modelName) {
+        String key = modelName.toLowerCase();
+        DataManager.ModelData modelData = cache.get(key);
+        if (modelData != null) {
+            return modelData;
+        }
+        Pointer pointer = index.get(key);
+        if (pointer == null) {
+            return null;
+        }
+        try {
+            modelData = decode(readPayload(pointer));
+        } catch (IOException e) {
+            logger.warning("Could not read " + modelName + " from " + logFile.getName() + ": " + e.getMessage());
+            return null;
+        }
+        modelData.setForceUpdate(true);
+        cache.put(key, modelData);
+        return modelData;
+    }
+
+    @Override
+    public synchronized Collection<String> getModelNames() {
+        Set<String> names = new LinkedHashSet<>(index.keySet());
+        names.addAll(pending.keySet());
+        return new ArrayList<>(names);
+    }
+
+    @Override
+    public synchronized int size() {
+        int size = index.size();
+        for (String key : pending.keySet()) {
+            if (!index.containsKey(key)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized void put(String modelName, DataManager.ModelData modelData) {
+        String key = modelName.toLowerCase();
+        cache.put(key, modelData);
+        // Records keep the spelling the model was first stored under
+        Pointer pointer = index.get(key);
+        pending.put(key, pointer != null ? pointer.name : pending.getOrDefault(key, modelName));
+    }
+
+    /**
+     * Appends one record per changed model, then rewrites the log if most of it is outdated
+     */
+    @Override
+    public synchronized boolean flush() throws IOException {
+        if (pending.isEmpty()) {
+            return false;
+        }
+        if (unreadable) {
+            throw new IOException(logFile.getName() + " could not be read, it is not overwritten");
+        }
+
+        Map<String, Pointer> written = new HashMap<>();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        long start = Math.max(validLength, HEADER_SIZE);
+        for (Map.Entry<String, String> entry : pending.entrySet()) {
+            byte[] payload = encode(entry.getValue(), cache.get(entry.getKey()));
+            out.writeInt(payload.length);
+            written.put(entry.getKey(), new Pointer(entry.getValue(), start + buffer.size(), payload.length));
+            out.write(payload);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            if (validLength < HEADER_SIZE) {
+                file.setLength(0);
+                file.writeInt(MAGIC);
+                file.writeByte(VERSION);
+            } else {
+                // Drops an incomplete record left by a crash
+                file.setLength(validLength);
+                file.seek(validLength);
+            }
+            file.write(buffer.toByteArray());
+            file.getChannel().force(false);
+        }
+
+        validLength = start + buffer.size();
+        recordCount += written.size();
+        index.putAll(written);
+        pending.clear();
+
+        if (recordCount >= COMPACT_MIN_RECORDS && recordCount > index.size() * COMPACT_RATIO) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Rewrites the log with only the latest record of each model, the records are copied without decoding
+     */
+    private void compact() throws IOException {
+        List<Pointer> live = new ArrayList<>(index.values());
+        live.sort(Comparator.comparingLong(pointer -> pointer.offset));
+
+        Path target = logFile.toPath();
+        Path temp = Files.createTempFile(target.getParent(), "data", ".log.tmp");
+        Map<String, Pointer> moved = new HashMap<>();
+        long position = HEADER_SIZE;
+        try {
+            try (RandomAccessFile source = new RandomAccessFile(logFile, "r");
+                 DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                for (Pointer pointer : live) {
+                    byte[] payload = new byte[pointer.length];
+                    source.seek(pointer.offset);
+                    source.readFully(payload);
+                    out.writeInt(payload.length);
+                    out.write(payload);
+                    moved.put(pointer.name.toLowerCase(), new Pointer(pointer.name, position + 4, pointer.length));
+                    position += 4 + pointer.length;
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        index.clear();
+        index.putAll(moved);
+        validLength = position;
+        recordCount = moved.size();
+    }
+
+    private byte[] readPayload(Pointer pointer) throws IOException {
+        byte[] payload = new byte[pointer.length];
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "r")) {
+            file.seek(pointer.offset);
+            file.readFully(payload);
+        }
+        return payload;
+    }
+
+    private static byte[] encode(String modelName, DataManager.ModelData modelData) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        writeString(out, modelName);
+        Map<String, DisplayTransform> displays = modelData.getDisplays();
+        out.writeByte(displays.size());
+        for (Map.Entry<String, DisplayTransform> entry : displays.entrySet()) {
+            DisplayTransform transform = entry.getValue();
+            writeString(out, entry.getKey());
+            int mask = 0;
+            for (int property = DisplayTransform.ROTATION; property <= DisplayTransform.SCALE; property++) {
+                if (transform.has(property)) {
+                    mask |= 1 << property;
+                }
+            }
+            out.writeByte(mask);
+            for (int property = DisplayTransform.ROTATION; property <= DisplayTransform.SCALE; property++) {
+                if (transform.has(property)) {
+                    for (int axis = 0; axis < 3; axis++) {
+                        out.writeDouble(transform.get(property, axis));
+                    }
+                }
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private static DataManager.ModelData decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        readString(in);
+        DataManager.ModelData modelData = new DataManager.ModelData();
+        int slots = in.readUnsignedByte();
+        for (int i = 0; i < slots; i++) {
+            String displayType = readString(in);
+            int mask = in.readUnsignedByte();
+            DisplayTransform transform = new DisplayTransform();
+            for (int property = DisplayTransform.ROTATION; property <= DisplayTransform.SCALE; property++) {
+                if ((mask & (1 << property)) != 0) {
+                    transform.set(property, in.readDouble(), in.readDouble(), in.readDouble());
+                }
+            }
+            modelData.setDisplay(displayType, transform);
+        }
+        return modelData;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipFully(DataInputStream in, int count) throws IOException {
+        while (count > 0) {
+            int skipped = in.skipBytes(count);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            count -= skipped;
+        }
+    }
+
+    @Override
+    public String getFileName() {
+        return logFile.getName();
+    }
+
+    private static final class Pointer {
+        private final String name;
+        private final long offset;
+        private final int length;
+
+        private Pointer(String name, long offset, int length) {
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.config;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Custom model data IDs of every model, stored in model-data.yml next to data.yml
+ * A model keeps its ID across runs, new models get the lowest free ID. IDs of removed models stay reserved
+ * until {@link #compact()} is called, so a client never sees an old ID pointing at a different model.
+ * {@link #allocate} may be called from several threads, a known model is returned without locking.
+ */
+public class ModelDataRegistry {
+    private final File registryFile;
+    // Keyed by "MATERIAL:namespace:item/model", lower case
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Integer> usedIds = new TreeSet<>();
+
+    /**
+     * @param dataFolder The plugin data folder, the registry is kept next to data.yml
+     */
+    public ModelDataRegistry(File dataFolder) {
+        this.registryFile = new File(dataFolder, "model-data.yml");
+    }
+
+    /**
+     * Loads the registry from disk, a missing or unreadable registry is treated as empty
+     */
+    public synchronized void load() {
+        entries.clear();
+        usedIds.clear();
+        if (!registryFile.exists()) {
+            return;
+        }
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(registryFile);
+        for (Map<?, ?> map : config.getMapList("models")) {
+            Object id = map.get("id");
+            Object material = map.get("material");
+            Object model = map.get("model");
+            if (!(id instanceof Number) || material == null || model == null) {
+                continue;
+            }
+            Entry entry = new Entry(((Number) id).intValue(), material.toString(), model.toString(),
+                Boolean.TRUE.equals(map.get("in-use")));
+            // The first entry wins if the file was edited into a duplicate ID
+            if (usedIds.add(entry.id)) {
+                entries.put(key(entry.material, entry.model), entry);
+            }
+        }
+    }
+
+    /**
+     * Starts a generation: no model is in use until it is allocated again
+     */
+    public synchronized void startRun() {
+        for (Entry entry : entries.values()) {
+            entry.inUse = false;
+        }
+    }
+
+    /**
+     * Writes the registry to disk
+     * @throws IOException If the registry could not be written
+     */
+    public synchronized void save() throws IOException {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort((a, b) -> Integer.compare(a.id, b.id));
+
+        List<Map<String, Object>> models = new ArrayList<>();
+        for (Entry entry : sorted) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", entry.id);
+            map.put("material", entry.material);
+            map.put("model", entry.model);
+            map.put("in-use", entry.inUse);
+            models.add(map);
+        }
+
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("models", models);
+        config.save(registryFile);
+    }
+
+    /**
+     * Returns the ID of a model, allocating the lowest free ID at or above start for a new one
+     * @param material The item material
+     * @param model The model path (e.g. "hmc:item/hat_helmet")
+     * @param start The lowest ID handed out (custom-model-data-start)
+     * @return The stable ID of the model
+     */
+    public int allocate(String material, String model, int start) {
+        String key = key(material, model);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.inUse = true;
+            return entry.id;
+        }
+        return allocateNew(key, material, model, start);
+    }
+
+    private synchronized int allocateNew(String key, String material, String model, int start) {
+        // Another thread may have added the model while this one waited
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.inUse = true;
+            return entry.id;
+        }
+
+        int id = start;
+        while (usedIds.contains(id)) {
+            id++;
+        }
+        usedIds.add(id);
+        entries.put(key, new Entry(id, material.toUpperCase(), model, true));
+        return id;
+    }
+
+    /**
+     * Frees the IDs of every model that was not in use in the last generation
+     * @return The number of freed IDs
+     */
+    public synchronized int compact() {
+        int removed = 0;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (!entry.inUse) {
+                usedIds.remove(entry.id);
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return The number of models in the registry
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of models in use by the last generation
+     */
+    public synchronized int countInUse() {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.inUse) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String key(String material, String model) {
+        return (material + ":" + model).toLowerCase();
+    }
+
+    private static final class Entry {
+        private final int id;
+        private final String material;
+        private final String model;
+        // Whether the model is part of the current (or last saved) generation
+        private volatile boolean inUse;
+
+        private Entry(int id, String material, String model, boolean inUse) {
+            this.id = id;
+            this.material = material;
+            this.model = model;
+            this.inUse = inUse;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.config;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Where the display overrides of {@link DataManager} are kept
+ * Model names are matched without case. Implementations are used from the main thread, the generation
+ * thread and the flush timer, every method must be safe to call from any of them.
+ */
+public interface ModelDataStore {
+
+    /**
+     * Reads the store from disk, replacing everything in memory
+     * @throws IOException If the store exists but could not be read
+     */
+    void load() throws IOException;
+
+    /**
+     * @param modelName The model name
+     * @return The overrides of the model, or null if the store has none
+     */
+    DataManager.ModelData get(String modelName);
+
+    /**
+     * @return The lower case names of all stored models
+     */
+    Collection<String> getModelNames();
+
+    /**
+     * @return The number of stored models
+     */
+    int size();
+
+    /**
+     * Stores the overrides of a model, written to disk by the next {@link #flush()}
+     * Names are matched ignoring case, an existing model keeps the spelling it was stored under.
+     */
+    void put(String modelName, DataManager.ModelData modelData);
+
+    /**
+     * Writes unsaved changes to disk
+     * @return true if something was written
+     * @throws IOException If the changes could not be written, they are kept for the next flush
+     */
+    boolean flush() throws IOException;
+
+    /**
+     * @return The file name shown in messages (e.g. data.yml)
+     */
+    String getFileName();
+}
@@ -0,0 +1,143 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.config;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The data.yml store: one YAML document, read completely on load and written completely on flush
+ * Easy to edit by hand, best for small and medium catalogs.
+ */
+public class YamlModelDataStore implements ModelDataStore {
+    private final File dataFile;
+    private FileConfiguration dataConfig = new YamlConfiguration();
+    private final Map<String, DataManager.ModelData> models = new HashMap<>();
+    // Lower case name -> every section key of that model in data.yml, the loaded one first
+    private final Map<String, List<String>> sectionKeys = new HashMap<>();
+    // Whether dataConfig has changes that are not on disk yet
+    private boolean dirty;
+
+    public YamlModelDataStore(File dataFile) {
+        this.dataFile = dataFile;
+    }
+
+    /**
+     * Parses data.yml once, the typed overrides are built from the same document that is saved later
+     */
+    @Override
+    public synchronized void load() {
+        dataConfig = YamlConfiguration.loadConfiguration(dataFile);
+        models.clear();
+        sectionKeys.clear();
+        dirty = false;
+
+        ConfigurationSection modelsSection = dataConfig.getConfigurationSection("models");
+        if (modelsSection == null) {
+            return;
+        }
+
+        for (String modelName : modelsSection.getKeys(false)) {
+            List<String> keys = sectionKeys.computeIfAbsent(modelName.toLowerCase(), k -> new ArrayList<>());
+            keys.add(modelName);
+            ConfigurationSection displaySection = modelsSection.getConfigurationSection(modelName + ".display");
+            if (displaySection == null) {
+                continue;
+            }
+            DataManager.ModelData modelData = new DataManager.ModelData();
+            for (String displayType : displaySection.getKeys(false)) {
+                if (displaySection.isConfigurationSection(displayType)) {
+                    DisplayTransform transform = DisplayTransform.fromSection(displaySection.getConfigurationSection(displayType));
+                    if (!transform.isEmpty()) {
+                        modelData.setDisplay(displayType, transform);
+                    }
+                }
+            }
+            if (!modelData.isEmpty()) {
+                modelData.setForceUpdate(true);
+                models.put(modelName.toLowerCase(), modelData);
+                // A later spelling of the same model replaces the earlier one, so its key is the one kept
+                keys.remove(modelName);
+                keys.add(0, modelName);
+            }
+        }
+    }
+
+    @Override
+    public synchronized DataManager.ModelData get(String modelName) {
+        return models.get(modelName.toLowerCase());
+    }
+
+    @Override
+    public synchronized Collection<String> getModelNames() {
+        return new ArrayList<>(models.keySet());
+    }
+
+    @Override
+    public synchronized int size() {
+        return models.size();
+    }
+
+    @Override
+    public synchronized void put(String modelName, DataManager.ModelData modelData) {
+        String key = modelName.toLowerCase();
+        models.put(key, modelData);
+
+        // Written under the key data.yml already uses, other spellings of the same model are dropped
+        List<String> keys = sectionKeys.get(key);
+        String storedName = keys != null ? keys.get(0) : modelName;
+        if (keys != null) {
+            for (String duplicate : keys.subList(1, keys.size())) {
+                dataConfig.set("models." + duplicate, null);
+            }
+        }
+        List<String> kept = new ArrayList<>();
+        kept.add(storedName);
+        sectionKeys.put(key, kept);
+
+        String basePath = "models." + storedName;
+        dataConfig.set(basePath + ".display", null);
+        for (Map.Entry<String, DisplayTransform> entry : modelData.getDisplays().entrySet()) {
+            for (Map.Entry<String, List<Double>> property : entry.getValue().toYaml().entrySet()) {
+                dataConfig.set(basePath + ".display." + entry.getKey() + "." + property.getKey(), property.getValue());
+            }
+        }
+        dirty = true;
+    }
+
+    /**
+     * The file is written next to data.yml and renamed over it, a crash never leaves a half-written file
+     */
+    @Override
+    public synchronized boolean flush() throws IOException {
+        if (!dirty) {
+            return false;
+        }
+        Path target = dataFile.toPath();
+        Path temp = Files.createTempFile(target.getParent(), "data", ".yml.tmp");
+        try {
+            Files.write(temp, dataConfig.saveToString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        dirty = false;
+        return true;
+    }
+
+    @Override
+    public String getFileName() {
+        return dataFile.getName();
+    }
+}
@@ -1,6 +1,8 @@
 package gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.bedrock;
 
 import com.google.gson.*;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackJson;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.util.EmbeddedImageReader;
 import org.bukkit.plugin.Plugin;
 
 import java.io.*;
@@ -75,11 +77,9 @@ public class BedrockPackGenerator {
     }
 
     private final Plugin plugin;
-    private final Gson gson;
 
     public BedrockPackGenerator(Plugin plugin) {
         this.plugin = plugin;
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
     }
 
     /** Ana giriş: BBModel'den tam bir Bedrock Resource Pack üretir */
@@ -89,28 +89,32 @@ public class BedrockPackGenerator {
             throw new FileNotFoundException("BBModel file not found: " + bbmodelPath);
         }
 
-        JsonObject bbModel = parseBBModel(bbmodelFile);
-
         // Model adı sanitize
         String rawName = bbmodelFile.getName().replaceAll("\\.bbmodel$", "");
         String modelName = sanitizeName(rawName);
         String packDirName = sanitizeName(packName) + "_bedrock";
 
-        // Klasör yapısı
+        // Klasör yapısı - texture'lar okuma sırasında textures/entity içine çıkarıldığı için önce oluşturulur
         File packDir = new File(outputPath, packDirName);
         createBedrockDirectoryStructure(packDir);
 
-        // manifest.json
-        generateManifest(packDir, packName);
+        // Embedded PNGs are decoded into temp files while the JSON is read, the tree only holds placeholders
+        Path texturesDir = new File(packDir, "textures/entity").toPath();
+        try (EmbeddedImageReader images = new EmbeddedImageReader(new FileReader(bbmodelFile), texturesDir)) {
+            JsonObject bbModel = parseBBModel(images);
+
+            // manifest.json
+            generateManifest(packDir, packName);
 
-        // geometry
-        generateBedrockGeometry(bbModel, packDir, modelName);
+            // geometry
+            generateBedrockGeometry(bbModel, packDir, modelName);
 
-        // textures - önce texture'ları extract et ve texture adını al
-        String actualTextureName = extractTextures(bbModel, packDir, modelName);
+            // textures - önce texture'ları extract et ve texture adını al
+            String actualTextureName = extractTextures(bbModel, packDir, modelName, images);
 
-        // attachable - gerçek texture adını kullan
-        generateBedrockAttachable(bbModel, packDir, modelName, actualTextureName);
+            // attachable - gerçek texture adını kullan
+            generateBedrockAttachable(bbModel, packDir, modelName, actualTextureName);
+        }
 
         plugin.getLogger().info("Bedrock pack generated successfully at: " + packDir.getAbsolutePath());
     }
@@ -128,11 +132,9 @@ public class BedrockPackGenerator {
         return s;
     }
 
-    /** BBModel JSON oku */
-    private JsonObject parseBBModel(File bbmodelFile) throws IOException {
-        try (FileReader reader = new FileReader(bbmodelFile)) {
-            return JsonParser.parseReader(reader).getAsJsonObject();
-        }
+    /** BBModel JSON oku - reader kapatılmaz, çıkarılan texture'lar extractTextures'a kadar yaşar */
+    private JsonObject parseBBModel(Reader reader) {
+        return JsonParser.parseReader(reader).getAsJsonObject();
     }
 
     /** Pack klasör yapısı */
@@ -174,7 +176,7 @@ public class BedrockPackGenerator {
         manifest.add("modules", modules);
 
         try (FileWriter writer = new FileWriter(new File(packDir, "manifest.json"))) {
-            gson.toJson(manifest, writer);
+            PackJson.write(manifest, writer);
         }
     }
 
@@ -364,7 +366,7 @@ public class BedrockPackGenerator {
 
         File geometryFile = new File(packDir, "models/entity/" + modelName + ".geo.json");
         try (FileWriter writer = new FileWriter(geometryFile)) {
-            gson.toJson(geometryRoot, writer);
+            PackJson.write(geometryRoot, writer);
         }
     }
 
@@ -431,12 +433,12 @@ public class BedrockPackGenerator {
         attachable.add("minecraft:attachable", attachableDef);
 
         try (FileWriter writer = new FileWriter(new File(packDir, "attachables/" + modelName + ".json"))) {
-            gson.toJson(attachable, writer);
+            PackJson.write(attachable, writer);
         }
     }
 
     /** BBModel içindeki base64 texture’ları çıkarır */
-    private String extractTextures(JsonObject bbModel, File packDir, String modelName) throws IOException {
+    private String extractTextures(JsonObject bbModel, File packDir, String modelName, EmbeddedImageReader images) throws IOException {
         if (!bbModel.has("textures") || !bbModel.get("textures").isJsonArray()) return modelName;
 
         JsonArray textures = bbModel.getAsJsonArray("textures");
@@ -459,15 +461,12 @@ public class BedrockPackGenerator {
             if (texture.has("source")) {
                 String source = texture.get("source").getAsString();
 
-                if (source.startsWith("data:image/png;base64,")) {
-                    String base64Data = source.substring("data:image/png;base64,".length());
-                    byte[] imageBytes = Base64.getDecoder().decode(base64Data);
-
+                // base64 PNG okuma sırasında geçici dosyaya çözüldü
+                EmbeddedImageReader.ExtractedImage image = images.claim(source);
+                if (image != null) {
                     // DÜZELTME: Benzersiz dosya adları
                     File textureFile = new File(texturesDir, textureName + ".png");
-                    try (FileOutputStream fos = new FileOutputStream(textureFile)) {
-                        fos.write(imageBytes);
-                    }
+                    Files.move(image.getFile(), textureFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
                     
                     plugin.getLogger().info("Bedrock texture extracted: " + textureName + ".png");
                 }
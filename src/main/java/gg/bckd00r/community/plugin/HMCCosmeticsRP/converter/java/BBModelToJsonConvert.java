@@ -1,14 +1,19 @@
 package gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.util.EmbeddedImageReader;
 
-import java.io.File;
-import java.io.FileWriter;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Base64;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class BBModelToJsonConvert {
@@ -34,41 +39,80 @@ public class BBModelToJsonConvert {
     }
 
     /**
+     * Converts a .bbmodel into a Minecraft model tree, textures are written to disk but the model itself is not.
+     * The caller applies its display overrides and writes the returned tree once.
      * @param bbmodelPath   .bbmodel dosyası
-     * @param mcjsonPath    çıkacak minecraft model json (assets/<ns>/models/... değil; bu sadece dosya yolu)
+     * @param modelName     model adı, isimsiz dokular için kullanılır (örn: "hat_helmet")
      * @param texturesRoot  assets/<namespace>/textures KÖK klasörü (örn: /pack/assets/hmc/textures)
      * @param namespace     örn: "hmc"
+     * @param options       texture ve çıktı ayarları
+     * @return The converted Minecraft model JSON with the original texture names
      */
-    public static void convert(String bbmodelPath,
-                               String mcjsonPath,
-                               String texturesRoot,
-                               String namespace) throws IOException {
+    public static ConvertedModel convert(String bbmodelPath,
+                                     String modelName,
+                                     String texturesRoot,
+                                     String namespace,
+                                     ConversionOptions options) throws IOException {
 
         // BBModel conversion starting
 
-        // Extract model name from JSON path for consistent texture naming
-        String modelName = new File(mcjsonPath).getName().replace(".json", "");
-        // Using model name for texture consistency
-
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-
-        // Add null check for file reading
-        String bbmodelContent = Files.readString(Path.of(bbmodelPath));
-        if (bbmodelContent == null || bbmodelContent.trim().isEmpty()) {
-            throw new IOException("BBModel file is empty or null: " + bbmodelPath);
-        }
+        // Ensure the textures directory exists
+        Path texturesDir = Path.of(texturesRoot);
+        Files.createDirectories(texturesDir);
 
-        // BBModel file loaded
+        // The file is streamed: base64 texture sources are decoded and written one at a time,
+        // only the small sections the output needs are kept as trees
+        JsonElement credit = null;
+        JsonElement textureSizeElement = null;
+        JsonElement resolutionElement = null;
+        JsonElement elementsElement = null;
+        JsonElement displayElement = null;
+        JsonObject texturesJson = new JsonObject();
+        Map<Integer, String> textureKeyMap = new HashMap<>();
+        List<String> textureNames = new ArrayList<>();
 
-        JsonObject bb;
-        try {
-            bb = gson.fromJson(bbmodelContent, JsonObject.class);
-            if (bb == null) {
+        // Embedded PNGs are decoded into temp files next to their final place while the JSON is read
+        try (EmbeddedImageReader images = new EmbeddedImageReader(Files.newBufferedReader(Path.of(bbmodelPath), StandardCharsets.UTF_8), texturesDir);
+             JsonReader reader = new JsonReader(images)) {
+            reader.setLenient(true);
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
                 // Failed to parse BBModel JSON
                 throw new IOException("Failed to parse BBModel JSON: " + bbmodelPath);
             }
-            // BBModel JSON parsed successfully
-        } catch (JsonSyntaxException e) {
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "credit":
+                        credit = JsonParser.parseReader(reader);
+                        break;
+                    case "texture_size":
+                        textureSizeElement = JsonParser.parseReader(reader);
+                        break;
+                    case "resolution":
+                        resolutionElement = JsonParser.parseReader(reader);
+                        break;
+                    case "textures":
+                        // ---- 1) Textures + PNG çıkarma ----
+                        readTextures(reader, images, modelName, texturesDir, namespace, options, texturesJson, textureKeyMap, textureNames);
+                        break;
+                    case "elements":
+                        // Elements reference textures that may come later in the file, converted after the pass
+                        elementsElement = JsonParser.parseReader(reader);
+                        break;
+                    case "display":
+                        displayElement = JsonParser.parseReader(reader);
+                        break;
+                    default:
+                        // outliner, animations etc. are not needed
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        } catch (EOFException e) {
+            throw new IOException("BBModel file is empty or null: " + bbmodelPath, e);
+        } catch (MalformedJsonException | JsonParseException | IllegalStateException e) {
             // Invalid JSON syntax in BBModel
             throw new IOException("Invalid JSON syntax in BBModel file: " + bbmodelPath, e);
         }
@@ -80,20 +124,20 @@ public class BBModelToJsonConvert {
         int textureHeight = 16;
 
         // Bilgi alanları - null safe
-        if (bb.has("credit") && !bb.get("credit").isJsonNull()) {
-            mc.add("credit", bb.get("credit"));
+        if (credit != null && !credit.isJsonNull()) {
+            mc.add("credit", credit);
         }
 
         // texture_size yoksa Blockbench "resolution"dan türet - null safe
-        if (bb.has("texture_size") && !bb.get("texture_size").isJsonNull()) {
-            JsonArray ts = bb.getAsJsonArray("texture_size");
+        if (textureSizeElement != null && !textureSizeElement.isJsonNull()) {
+            JsonArray ts = textureSizeElement.getAsJsonArray();
             if (ts.size() >= 2) {
                 textureWidth = ts.get(0).getAsInt();
                 textureHeight = ts.get(1).getAsInt();
             }
-            mc.add("texture_size", bb.get("texture_size"));
-        } else if (bb.has("resolution") && bb.get("resolution").isJsonObject()) {
-            JsonObject res = bb.getAsJsonObject("resolution");
+            mc.add("texture_size", textureSizeElement);
+        } else if (resolutionElement != null && resolutionElement.isJsonObject()) {
+            JsonObject res = resolutionElement.getAsJsonObject();
             if (res != null && res.has("width") && res.has("height") &&
                     !res.get("width").isJsonNull() && !res.get("height").isJsonNull()) {
                 textureWidth = res.get("width").getAsInt();
@@ -105,85 +149,10 @@ public class BBModelToJsonConvert {
             }
         }
 
-        // ---- 1) Textures + PNG çıkarma ----
-        JsonObject texturesJson = new JsonObject();
-        Map<Integer, String> textureKeyMap = new HashMap<>();
-
-        // Ensure the textures directory exists
-        Path texturesDir = Path.of(texturesRoot);
-        Files.createDirectories(texturesDir);
-
-        JsonElement texEl = bb.get("textures");
-        if (texEl != null && !texEl.isJsonNull() && texEl.isJsonArray()) {
-            JsonArray bbTextures = texEl.getAsJsonArray();
-            for (int i = 0; i < bbTextures.size(); i++) {
-                JsonElement textureElement = bbTextures.get(i);
-                if (textureElement == null || textureElement.isJsonNull() || !textureElement.isJsonObject()) {
-                    continue; // Skip null or invalid texture entries
-                }
-
-                JsonObject t = textureElement.getAsJsonObject();
-
-                // Try to use original BBModel texture name if available, otherwise fall back to model name
-                String pngName;
-                String baseName;
-
-                if (t.has("name") && !t.get("name").isJsonNull()) {
-                    // Use original BBModel texture name
-                    String originalName = t.get("name").getAsString();
-                    // DÜZELTME: _png suffix'ini kaldır (gereksiz suffix)
-                    if (originalName.endsWith("_png")) {
-                        originalName = originalName.substring(0, originalName.length() - 4);
-                    }
-                    // Clean the name for file system compatibility
-                    originalName = originalName.replaceAll("[^a-zA-Z0-9_-]", "_");
-                    pngName = originalName + ".png";
-                    baseName = originalName;
-                } else {
-                    // Fallback to model name system
-                    if (i == 0) {
-                        pngName = modelName + ".png";
-                        baseName = modelName;
-                    } else {
-                        pngName = modelName + "_" + i + ".png";
-                        baseName = modelName + "_" + i;
-                    }
-                }
-
-                // Kaynak paket kuralları: küçük harf, boşluk yok
-                pngName = pngName.toLowerCase().replace(' ', '_');
-                baseName = baseName.toLowerCase().replace(' ', '_');
-
-                // Eğer base64 PNG varsa yaz
-                if (t.has("source") && !t.get("source").isJsonNull()) {
-                    String src = t.get("source").getAsString();
-                    if (src != null && src.startsWith("data:image/png;base64,")) {
-                        try {
-                            byte[] image = Base64.getDecoder().decode(src.substring("data:image/png;base64,".length()));
-                            Files.write(texturesDir.resolve(pngName), image);
-
-                            // Check if this texture should be animated and create .mcmeta file
-                            createAnimationMcmeta(t, texturesDir, pngName);
-                        } catch (IllegalArgumentException e) {
-                            // Skip invalid base64 data
-                        }
-                    }
-                }
-
-                String mcPath = namespace + ":item/" + baseName;
-                texturesJson.addProperty(String.valueOf(i), mcPath);
-                textureKeyMap.put(i, String.valueOf(i));
-                if (i == 0) {
-                    // GUI/particle için ilk dokuyu kullan
-                    texturesJson.addProperty("particle", mcPath);
-                }
-            }
-        }
         mc.add("textures", texturesJson);
 
         // ---- 2) Elements ----
         JsonArray outElems = new JsonArray();
-        JsonElement elementsElement = bb.get("elements");
         if (elementsElement != null && !elementsElement.isJsonNull() && elementsElement.isJsonArray()) {
             JsonArray bbElems = elementsElement.getAsJsonArray();
             for (JsonElement e : bbElems) {
@@ -276,23 +245,106 @@ public class BBModelToJsonConvert {
         }
         mc.add("elements", outElems);
 
-        if (bb.has("display") && !bb.get("display").isJsonNull()) mc.add("display", bb.get("display"));
+        if (displayElement != null && !displayElement.isJsonNull()) mc.add("display", displayElement);
 
+        // Gereksiz yüzeyleri ve birleşebilen küpleri temizle (isteğe bağlı)
+        GeometryOptimizer.Result geometry = null;
+        if (options.isOptimizeGeometry()) {
+            geometry = GeometryOptimizer.optimize(mc, texturesDir, namespace);
+        }
 
+        // BBModel conversion complete
+        return new ConvertedModel(mc, textureNames, geometry);
+    }
 
-        try (FileWriter w = new FileWriter(mcjsonPath)) {
-            gson.toJson(mc, w);
-        } catch (IOException e) {
-            throw e;
+    /**
+     * Streams the textures array, moving each embedded PNG into place as soon as its entry has been read
+     * Only the small texture properties are kept as a tree, the base64 source never reaches the parser
+     */
+    private static void readTextures(JsonReader reader, EmbeddedImageReader images, String modelName, Path texturesDir,
+                                     String namespace, ConversionOptions options,
+                                     JsonObject texturesJson, Map<Integer, String> textureKeyMap, List<String> textureNames) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
         }
 
-        // BBModel conversion complete
+        reader.beginArray();
+        for (int i = 0; reader.hasNext(); i++) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue; // Skip null or invalid texture entries
+            }
+
+            JsonObject t = new JsonObject();
+            EmbeddedImageReader.ExtractedImage image = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                if (!key.equals("source")) {
+                    t.add(key, JsonParser.parseReader(reader));
+                } else if (reader.peek() == JsonToken.STRING) {
+                    // Eğer base64 PNG varsa zaten geçici dosyaya çözüldü, "name" kaynaktan sonra gelebilir, taşıma işlemi nesne bitince
+                    image = images.claim(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            // Try to use original BBModel texture name if available, otherwise fall back to model name
+            String pngName;
+            String baseName;
+
+            if (t.has("name") && !t.get("name").isJsonNull()) {
+                // Use original BBModel texture name
+                String originalName = t.get("name").getAsString();
+                // DÜZELTME: _png suffix'ini kaldır (gereksiz suffix)
+                if (originalName.endsWith("_png")) {
+                    originalName = originalName.substring(0, originalName.length() - 4);
+                }
+                // Clean the name for file system compatibility
+                originalName = originalName.replaceAll("[^a-zA-Z0-9_-]", "_");
+                pngName = originalName + ".png";
+                baseName = originalName;
+            } else {
+                // Fallback to model name system
+                if (i == 0) {
+                    pngName = modelName + ".png";
+                    baseName = modelName;
+                } else {
+                    pngName = modelName + "_" + i + ".png";
+                    baseName = modelName + "_" + i;
+                }
+            }
+
+            // Kaynak paket kuralları: küçük harf, boşluk yok
+            pngName = pngName.toLowerCase().replace(' ', '_');
+            baseName = baseName.toLowerCase().replace(' ', '_');
+
+            textureNames.add(baseName);
+            if (image != null) {
+                // Stored by content, identical PNGs of other models (firstperson, color variants) share the file
+                // Check if this texture should be animated, the .mcmeta is part of the stored texture
+                baseName = TextureStore.store(image, buildAnimationMcmeta(t, pngName), texturesDir, options);
+            }
+
+            String mcPath = namespace + ":item/" + baseName;
+            texturesJson.addProperty(String.valueOf(i), mcPath);
+            textureKeyMap.put(i, String.valueOf(i));
+            if (i == 0) {
+                // GUI/particle için ilk dokuyu kullan
+                texturesJson.addProperty("particle", mcPath);
+            }
+        }
+        reader.endArray();
     }
 
     /**
-     * Creates .mcmeta file for animated textures based on BBModel texture properties
+     * Builds the .mcmeta for animated textures based on BBModel texture properties
+     * @return The .mcmeta JSON, or null if the texture is not animated
      */
-    private static void createAnimationMcmeta(JsonObject textureObj, Path texturesDir, String pngName) {
+    private static JsonObject buildAnimationMcmeta(JsonObject textureObj, String pngName) {
         try {
             // Check if texture has animation properties
             boolean shouldAnimate = false;
@@ -333,21 +385,15 @@ public class BBModelToJsonConvert {
                 animationConfig.addProperty("interpolate", false);
             }
 
-            // Create .mcmeta file if animation is needed
+            // Create .mcmeta if animation is needed
             if (shouldAnimate) {
                 JsonObject mcmeta = new JsonObject();
                 mcmeta.add("animation", animationConfig);
-
-                String mcmetaName = pngName.replace(".png", ".png.mcmeta");
-                Path mcmetaPath = texturesDir.resolve(mcmetaName);
-
-                Gson gson = new GsonBuilder().setPrettyPrinting().create();
-                try (FileWriter writer = new FileWriter(mcmetaPath.toFile())) {
-                    gson.toJson(mcmeta, writer);
-                }
+                return mcmeta;
             }
         } catch (Exception e) {
             // Silently ignore animation mcmeta creation errors
         }
+        return null;
     }
 }
\ No newline at end of file
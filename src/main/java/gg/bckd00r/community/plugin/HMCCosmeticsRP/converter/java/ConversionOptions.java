@@ -0,0 +1,104 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java;
+
+import java.nio.file.Path;
+
+/**
+ * Settings shared by every model conversion of one generation run
+ */
+public class ConversionOptions {
+    private boolean optimizeTextures;
+    private Path textureCacheDir;
+    private boolean optimizeGeometry;
+    private boolean compactJson;
+    private boolean textureAtlas;
+    private int atlasMaxTextureSize = 64;
+    private int atlasSheetSize = 1024;
+
+    /**
+     * @return true if extracted PNGs are losslessly re-encoded before they are stored
+     */
+    public boolean isOptimizeTextures() {
+        return optimizeTextures;
+    }
+
+    public void setOptimizeTextures(boolean optimizeTextures) {
+        this.optimizeTextures = optimizeTextures;
+    }
+
+    /**
+     * @return Where optimized PNGs are cached by the hash of the original, kept across runs
+     */
+    public Path getTextureCacheDir() {
+        return textureCacheDir;
+    }
+
+    public void setTextureCacheDir(Path textureCacheDir) {
+        this.textureCacheDir = textureCacheDir;
+    }
+
+    /**
+     * @return true if hidden faces are dropped and adjacent cubes merged after conversion
+     */
+    public boolean isOptimizeGeometry() {
+        return optimizeGeometry;
+    }
+
+    public void setOptimizeGeometry(boolean optimizeGeometry) {
+        this.optimizeGeometry = optimizeGeometry;
+    }
+
+    /**
+     * @return true if model files are written minified, see PackJson
+     */
+    public boolean isCompactJson() {
+        return compactJson;
+    }
+
+    public void setCompactJson(boolean compactJson) {
+        this.compactJson = compactJson;
+    }
+
+    /**
+     * @return true if small textures of the converted models are packed into shared atlas sheets
+     */
+    public boolean isTextureAtlas() {
+        return textureAtlas;
+    }
+
+    public void setTextureAtlas(boolean textureAtlas) {
+        this.textureAtlas = textureAtlas;
+    }
+
+    /**
+     * @return The largest texture width or height that is packed into a sheet
+     */
+    public int getAtlasMaxTextureSize() {
+        return atlasMaxTextureSize;
+    }
+
+    public void setAtlasMaxTextureSize(int atlasMaxTextureSize) {
+        this.atlasMaxTextureSize = atlasMaxTextureSize;
+    }
+
+    /**
+     * @return The largest width and height of a sheet, a power of two
+     */
+    public int getAtlasSheetSize() {
+        return atlasSheetSize;
+    }
+
+    public void setAtlasSheetSize(int atlasSheetSize) {
+        this.atlasSheetSize = atlasSheetSize;
+    }
+
+    /**
+     * Text form of the options that change converted files, part of the build manifest fingerprint
+     */
+    public String fingerprint() {
+        return "optimize-textures=" + optimizeTextures
+            + ";optimize-geometry=" + optimizeGeometry
+            + ";compact-json=" + compactJson
+            // "grid16" marks sheets with mipmap-aligned cells, sheets of older runs are packed again
+            + ";texture-atlas=" + (textureAtlas ? atlasMaxTextureSize + "/" + atlasSheetSize + "/grid16" : "false");
+    }
+}
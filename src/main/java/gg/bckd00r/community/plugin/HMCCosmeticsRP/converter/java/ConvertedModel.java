@@ -0,0 +1,43 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java;
+
+import com.google.gson.JsonObject;
+
+import java.util.List;
+
+/**
+ * Result of converting a .bbmodel: the Minecraft model JSON and the Blockbench names of its textures.
+ * Texture files are named by content, the original names are kept for name based checks such as paintability.
+ */
+public class ConvertedModel {
+    private final JsonObject json;
+    private final List<String> textureNames;
+    private final GeometryOptimizer.Result geometry;
+
+    public ConvertedModel(JsonObject json, List<String> textureNames) {
+        this(json, textureNames, null);
+    }
+
+    public ConvertedModel(JsonObject json, List<String> textureNames, GeometryOptimizer.Result geometry) {
+        this.json = json;
+        this.textureNames = textureNames;
+        this.geometry = geometry;
+    }
+
+    public JsonObject getJson() {
+        return json;
+    }
+
+    /**
+     * @return The cleaned Blockbench texture names (or model name fallbacks), in texture order
+     */
+    public List<String> getTextureNames() {
+        return textureNames;
+    }
+
+    /**
+     * @return What the geometry optimizer removed, or null if the model was not optimized
+     */
+    public GeometryOptimizer.Result getGeometry() {
+        return geometry;
+    }
+}
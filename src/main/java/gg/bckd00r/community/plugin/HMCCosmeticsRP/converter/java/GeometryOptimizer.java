@@ -0,0 +1,557 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PngOptimizer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+
+/**
+ * Removes geometry the client would draw for nothing from a converted model.
+ * - Faces with zero area (flat elements) are dropped.
+ * - Adjacent cubes sharing a whole side are merged when their side faces continue each other's texture.
+ * - Faces covered by another cube are dropped.
+ * Only cubes that are sealed (unrotated, six faces, every face fully opaque over its UV) hide or merge geometry,
+ * so nothing that could be seen through a transparent pixel is ever removed.
+ * Rotated elements are left as they are apart from their zero area faces.
+ */
+public final class GeometryOptimizer {
+    private static final double EPSILON = 1e-6;
+
+    // Face names by direction index, with the axis of their normal and whether it points to +axis
+    private static final String[] FACES = {"down", "up", "north", "south", "west", "east"};
+    private static final int[] NORMAL_AXIS = {1, 1, 2, 2, 0, 0};
+    private static final boolean[] POSITIVE = {false, true, false, true, false, true};
+    // World axis of the u and v texture coordinates, and whether u1/v1 sits on the low end of that axis
+    // (Minecraft's automatic UV of each face)
+    private static final int[] U_AXIS = {0, 0, 0, 0, 2, 2};
+    private static final boolean[] U_ASCENDING = {true, true, false, true, true, false};
+    private static final int[] V_AXIS = {2, 2, 1, 1, 1, 1};
+    private static final boolean[] V_ASCENDING = {false, true, false, false, false, false};
+
+    private static final Set<String> PLAIN_ELEMENT_KEYS = new HashSet<>(Arrays.asList("from", "to", "faces"));
+    private static final Set<String> PLAIN_FACE_KEYS = new HashSet<>(Arrays.asList("uv", "texture", "tintindex"));
+
+    private GeometryOptimizer() {
+    }
+
+    /**
+     * Optimizes the elements of a converted model in place
+     * @param model The converted model JSON, its textures must already be in texturesDir
+     * @param texturesDir The textures directory (assets/&lt;namespace&gt;/textures/item), read to find opaque faces
+     * @param namespace The pack namespace
+     * @return How many elements and faces were removed
+     */
+    public static Result optimize(JsonObject model, Path texturesDir, String namespace) {
+        if (!model.has("elements") || !model.get("elements").isJsonArray()) {
+            return new Result(0, 0);
+        }
+        JsonArray elements = model.getAsJsonArray("elements");
+        JsonObject textures = model.has("textures") && model.get("textures").isJsonObject()
+            ? model.getAsJsonObject("textures") : new JsonObject();
+        Opacity opacity = new Opacity(textures, texturesDir, namespace + ":item/");
+
+        int elementsBefore = elements.size();
+        int facesBefore = countFaces(elements);
+
+        List<Box> boxes = new ArrayList<>();
+        Map<JsonElement, Box> boxByElement = new IdentityHashMap<>();
+        List<JsonElement> candidates = new ArrayList<>();
+        for (JsonElement e : elements) {
+            if (!e.isJsonObject()) {
+                candidates.add(e);
+                continue;
+            }
+            JsonObject element = e.getAsJsonObject();
+            double[] from = readVector(element, "from");
+            double[] to = readVector(element, "to");
+            if (from != null && to != null) {
+                dropDegenerateFaces(element, from, to);
+                if (!element.has("faces") || element.getAsJsonObject("faces").size() == 0) {
+                    continue; // Nothing left to draw
+                }
+                if (isPlain(element)) {
+                    Box box = new Box(element, from, to, opacity);
+                    boxes.add(box);
+                    boxByElement.put(e, box);
+                }
+            }
+            candidates.add(e);
+        }
+
+        mergeBoxes(boxes);
+        cullHiddenFaces(boxes);
+
+        // Cubes stay in their original order, merged ones take the place of their first part
+        JsonArray result = new JsonArray();
+        for (JsonElement e : candidates) {
+            Box box = boxByElement.get(e);
+            if (box == null) {
+                result.add(e);
+            } else if (!box.removed && box.faceCount() > 0) {
+                box.writeBack();
+                result.add(e);
+            }
+        }
+        model.add("elements", result);
+
+        return new Result(elementsBefore - result.size(), facesBefore - countFaces(result));
+    }
+
+    /**
+     * Drops faces of an element that have no area, such as the edges of a flat plane
+     */
+    private static void dropDegenerateFaces(JsonObject element, double[] from, double[] to) {
+        if (!element.has("faces") || !element.get("faces").isJsonObject()) {
+            return;
+        }
+        JsonObject faces = element.getAsJsonObject("faces");
+        for (int d = 0; d < FACES.length; d++) {
+            if (!faces.has(FACES[d])) {
+                continue;
+            }
+            int normal = NORMAL_AXIS[d];
+            for (int axis = 0; axis < 3; axis++) {
+                if (axis != normal && Math.abs(to[axis] - from[axis]) < EPSILON) {
+                    faces.remove(FACES[d]);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges sealed cubes that share a whole side until no pair can be merged anymore
+     */
+    private static void mergeBoxes(List<Box> boxes) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (Box a : boxes) {
+                if (a.removed || !a.sealed) {
+                    continue;
+                }
+                for (Box b : boxes) {
+                    if (b == a || b.removed || !b.sealed) {
+                        continue;
+                    }
+                    for (int axis = 0; axis < 3; axis++) {
+                        if (tryMerge(a, b, axis)) {
+                            merged = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        boxes.removeIf(box -> box.removed);
+    }
+
+    /**
+     * Merges b into a when b continues a along +axis with the same cross-section and seamless side faces
+     */
+    private static boolean tryMerge(Box a, Box b, int axis) {
+        if (!same(a.to[axis], b.from[axis])) {
+            return false;
+        }
+        for (int other = 0; other < 3; other++) {
+            if (other != axis && (!same(a.from[other], b.from[other]) || !same(a.to[other], b.to[other]))) {
+                return false;
+            }
+        }
+
+        double lengthA = a.to[axis] - a.from[axis];
+        double lengthB = b.to[axis] - b.from[axis];
+        double[][] mergedUv = new double[FACES.length][];
+        for (int d = 0; d < FACES.length; d++) {
+            if (NORMAL_AXIS[d] == axis) {
+                continue;
+            }
+            Face faceA = a.faces[d];
+            Face faceB = b.faces[d];
+            if (!Objects.equals(faceA.texture, faceB.texture) || !Objects.equals(faceA.tint, faceB.tint)) {
+                return false;
+            }
+
+            // The texture coordinate that runs along the merge axis has to continue, the other one must match
+            boolean alongU = U_AXIS[d] == axis;
+            int p1 = alongU ? 0 : 1;
+            int p2 = alongU ? 2 : 3;
+            int q1 = alongU ? 1 : 0;
+            int q2 = alongU ? 3 : 2;
+            boolean ascending = alongU ? U_ASCENDING[d] : V_ASCENDING[d];
+            if (!same(faceA.uv[q1], faceB.uv[q1]) || !same(faceA.uv[q2], faceB.uv[q2])) {
+                return false;
+            }
+            if (!same((faceA.uv[p2] - faceA.uv[p1]) / lengthA, (faceB.uv[p2] - faceB.uv[p1]) / lengthB)) {
+                return false; // different texel density
+            }
+
+            double[] uv = faceA.uv.clone();
+            if (ascending) {
+                if (!same(faceA.uv[p2], faceB.uv[p1])) {
+                    return false;
+                }
+                uv[p2] = faceB.uv[p2];
+            } else {
+                if (!same(faceB.uv[p2], faceA.uv[p1])) {
+                    return false;
+                }
+                uv[p1] = faceB.uv[p1];
+            }
+            mergedUv[d] = uv;
+        }
+
+        // Side faces span both cubes, the +axis end comes from b, the faces between them disappear
+        for (int d = 0; d < FACES.length; d++) {
+            if (mergedUv[d] != null) {
+                a.faces[d].uv = mergedUv[d];
+                a.faces[d].uvChanged = true;
+            } else if (POSITIVE[d]) {
+                a.faces[d] = b.faces[d];
+            }
+        }
+        a.to[axis] = b.to[axis];
+        a.changed = true;
+        b.removed = true;
+        return true;
+    }
+
+    /**
+     * Drops faces whose front lies inside a sealed cube, they can only be seen from within that cube
+     */
+    private static void cullHiddenFaces(List<Box> boxes) {
+        List<Box> occluders = new ArrayList<>();
+        for (Box box : boxes) {
+            if (box.sealed) {
+                occluders.add(box);
+            }
+        }
+        if (occluders.isEmpty()) {
+            return;
+        }
+
+        for (Box box : boxes) {
+            for (int d = 0; d < FACES.length; d++) {
+                if (box.faces[d] == null) {
+                    continue;
+                }
+                for (Box occluder : occluders) {
+                    if (occluder != box && covers(occluder, box, d)) {
+                        box.faces[d] = null;
+                        box.changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the space right in front of the given face of box lies inside the occluder
+     */
+    private static boolean covers(Box occluder, Box box, int direction) {
+        int normal = NORMAL_AXIS[direction];
+        double plane = POSITIVE[direction] ? box.to[normal] : box.from[normal];
+        boolean inFront = POSITIVE[direction]
+            ? occluder.from[normal] <= plane + EPSILON && plane < occluder.to[normal] - EPSILON
+            : occluder.from[normal] + EPSILON < plane && plane <= occluder.to[normal] + EPSILON;
+        if (!inFront) {
+            return false;
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            if (axis != normal && (occluder.from[axis] > box.from[axis] + EPSILON || occluder.to[axis] < box.to[axis] - EPSILON)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPlain(JsonObject element) {
+        if (!PLAIN_ELEMENT_KEYS.containsAll(element.keySet()) || !element.get("faces").isJsonObject()) {
+            return false;
+        }
+        for (Map.Entry<String, JsonElement> face : element.getAsJsonObject("faces").entrySet()) {
+            if (!face.getValue().isJsonObject() || !PLAIN_FACE_KEYS.containsAll(face.getValue().getAsJsonObject().keySet())
+                    || !Arrays.asList(FACES).contains(face.getKey())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int countFaces(JsonArray elements) {
+        int count = 0;
+        for (JsonElement e : elements) {
+            if (e.isJsonObject() && e.getAsJsonObject().has("faces") && e.getAsJsonObject().get("faces").isJsonObject()) {
+                count += e.getAsJsonObject().getAsJsonObject("faces").size();
+            }
+        }
+        return count;
+    }
+
+    private static double[] readVector(JsonObject element, String key) {
+        if (!element.has(key) || !element.get(key).isJsonArray() || element.getAsJsonArray(key).size() != 3) {
+            return null;
+        }
+        JsonArray array = element.getAsJsonArray(key);
+        double[] values = new double[3];
+        for (int i = 0; i < 3; i++) {
+            if (!array.get(i).isJsonPrimitive() || !array.get(i).getAsJsonPrimitive().isNumber()) {
+                return null;
+            }
+            values[i] = array.get(i).getAsDouble();
+        }
+        return values;
+    }
+
+    private static JsonArray toArray(double[] values) {
+        JsonArray array = new JsonArray();
+        for (double value : values) {
+            array.add(value);
+        }
+        return array;
+    }
+
+    private static boolean same(double a, double b) {
+        return Math.abs(a - b) < EPSILON;
+    }
+
+    /**
+     * An unrotated cube with only from, to and plain faces, indexed by direction
+     */
+    private static final class Box {
+        private final JsonObject element;
+        private final double[] from;
+        private final double[] to;
+        private final Face[] faces = new Face[FACES.length];
+        private final boolean sealed;
+        private boolean removed;
+        // Set once bounds or faces differ from the element JSON
+        private boolean changed;
+
+        private Box(JsonObject element, double[] from, double[] to, Opacity opacity) {
+            this.element = element;
+            // Blockbench may store a cube with from > to, the min/max corners are what matters here
+            this.from = new double[3];
+            this.to = new double[3];
+            for (int axis = 0; axis < 3; axis++) {
+                this.from[axis] = Math.min(from[axis], to[axis]);
+                this.to[axis] = Math.max(from[axis], to[axis]);
+            }
+
+            JsonObject facesJson = element.getAsJsonObject("faces");
+            boolean allOpaque = true;
+            for (int d = 0; d < FACES.length; d++) {
+                if (!facesJson.has(FACES[d])) {
+                    allOpaque = false;
+                    continue;
+                }
+                JsonObject face = facesJson.getAsJsonObject(FACES[d]);
+                double[] uv = faceUv(face, d, this.from, this.to);
+                String texture = face.has("texture") && face.get("texture").isJsonPrimitive() ? face.get("texture").getAsString() : null;
+                faces[d] = new Face(face, texture, uv);
+                allOpaque &= uv != null && opacity.isOpaque(texture, uv);
+            }
+            this.sealed = allOpaque;
+        }
+
+        private int faceCount() {
+            int count = 0;
+            for (Face face : faces) {
+                if (face != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Writes bounds and faces back into the element JSON, stretched faces of merged cubes get an explicit uv
+         */
+        private void writeBack() {
+            if (!changed) {
+                return;
+            }
+            element.add("from", toArray(from));
+            element.add("to", toArray(to));
+            JsonObject facesJson = new JsonObject();
+            for (int d = 0; d < FACES.length; d++) {
+                Face face = faces[d];
+                if (face == null) {
+                    continue;
+                }
+                JsonObject json = face.json.deepCopy();
+                if (face.uvChanged) {
+                    json.add("uv", toArray(face.uv));
+                }
+                facesJson.add(FACES[d], json);
+            }
+            element.add("faces", facesJson);
+        }
+    }
+
+    private static final class Face {
+        private final JsonObject json;
+        private final String texture;
+        private final JsonElement tint;
+        private double[] uv;
+        private boolean uvChanged;
+
+        private Face(JsonObject json, String texture, double[] uv) {
+            this.json = json;
+            this.texture = texture;
+            this.tint = json.get("tintindex");
+            this.uv = uv;
+        }
+    }
+
+    /**
+     * @return The face UV in 0-16 texture space, Minecraft's automatic UV when the face has none, or null
+     */
+    private static double[] faceUv(JsonObject face, int direction, double[] from, double[] to) {
+        if (face.has("uv")) {
+            if (!face.get("uv").isJsonArray() || face.getAsJsonArray("uv").size() != 4) {
+                return null;
+            }
+            JsonArray uv = face.getAsJsonArray("uv");
+            double[] values = new double[4];
+            for (int i = 0; i < 4; i++) {
+                if (!uv.get(i).isJsonPrimitive() || !uv.get(i).getAsJsonPrimitive().isNumber()) {
+                    return null;
+                }
+                values[i] = uv.get(i).getAsDouble();
+            }
+            return values;
+        }
+
+        return autoUv(FACES[direction], from, to);
+    }
+
+    /**
+     * Minecraft's automatic UV of a face without an explicit one, derived from the element bounds
+     * @param faceName down, up, north, south, west or east
+     * @return The UV in 0-16 texture space, or null for an unknown face name
+     */
+    public static double[] autoUv(String faceName, double[] from, double[] to) {
+        int direction = Arrays.asList(FACES).indexOf(faceName);
+        if (direction < 0) {
+            return null;
+        }
+        double[] uv = new double[4];
+        uv[0] = U_ASCENDING[direction] ? from[U_AXIS[direction]] : 16 - to[U_AXIS[direction]];
+        uv[2] = U_ASCENDING[direction] ? to[U_AXIS[direction]] : 16 - from[U_AXIS[direction]];
+        uv[1] = V_ASCENDING[direction] ? from[V_AXIS[direction]] : 16 - to[V_AXIS[direction]];
+        uv[3] = V_ASCENDING[direction] ? to[V_AXIS[direction]] : 16 - from[V_AXIS[direction]];
+        return uv;
+    }
+
+    /**
+     * Answers whether the pixels a face samples are all fully opaque, textures are decoded once per model
+     */
+    private static final class Opacity {
+        private final JsonObject textures;
+        private final Path texturesDir;
+        private final String texturePrefix;
+        private final Map<String, int[]> pixels = new HashMap<>();
+        private final Map<String, int[]> sizes = new HashMap<>();
+
+        private Opacity(JsonObject textures, Path texturesDir, String texturePrefix) {
+            this.textures = textures;
+            this.texturesDir = texturesDir;
+            this.texturePrefix = texturePrefix;
+        }
+
+        private boolean isOpaque(String reference, double[] uv) {
+            if (reference == null || !reference.startsWith("#")) {
+                return false;
+            }
+            String key = reference.substring(1);
+            if (!pixels.containsKey(key)) {
+                load(key);
+            }
+            int[] argb = pixels.get(key);
+            if (argb == null) {
+                return false;
+            }
+
+            int width = sizes.get(key)[0];
+            int height = sizes.get(key)[1];
+            int x0 = clamp((int) Math.floor(Math.min(uv[0], uv[2]) / 16.0 * width + EPSILON), width - 1);
+            int y0 = clamp((int) Math.floor(Math.min(uv[1], uv[3]) / 16.0 * height + EPSILON), height - 1);
+            int x1 = Math.max(x0 + 1, clamp((int) Math.ceil(Math.max(uv[0], uv[2]) / 16.0 * width - EPSILON), width));
+            int y1 = Math.max(y0 + 1, clamp((int) Math.ceil(Math.max(uv[1], uv[3]) / 16.0 * height - EPSILON), height));
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    if ((argb[y * width + x] >>> 24) != 255) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void load(String key) {
+            pixels.put(key, null);
+            JsonElement reference = textures.get(key);
+            if (reference == null || !reference.isJsonPrimitive() || !reference.getAsString().startsWith(texturePrefix)) {
+                return;
+            }
+            String name = reference.getAsString().substring(texturePrefix.length());
+            Path file = texturesDir.resolve(name + ".png");
+            // Animated textures change over time, they never count as opaque
+            if (name.contains("/") || !Files.isRegularFile(file) || Files.exists(texturesDir.resolve(name + ".png.mcmeta"))) {
+                return;
+            }
+            try {
+                int[] size = new int[2];
+                int[] argb = PngOptimizer.decode(Files.readAllBytes(file), size);
+                if (argb != null) {
+                    pixels.put(key, argb);
+                    sizes.put(key, size);
+                }
+            } catch (IOException | DataFormatException | RuntimeException e) {
+                // Unreadable texture, treated as transparent
+            }
+        }
+
+        private static int clamp(int value, int max) {
+            return Math.max(0, Math.min(value, max));
+        }
+    }
+
+    /**
+     * What the optimizer removed from one model
+     */
+    public static final class Result {
+        private final int removedElements;
+        private final int removedFaces;
+
+        // Public so the conversion worker can rebuild it from its reply
+        public Result(int removedElements, int removedFaces) {
+            this.removedElements = removedElements;
+            this.removedFaces = removedFaces;
+        }
+
+        public int getRemovedElements() {
+            return removedElements;
+        }
+
+        public int getRemovedFaces() {
+            return removedFaces;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PngOptimizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+
+/**
+ * Packs the small textures of converted models into shared sheets and remaps the model faces onto them.
+ * A model is only packed when every face can be moved: its textures are static PNGs of this namespace no larger
+ * than the size limit, and every face UV stays inside its texture (tiling UVs would show the neighbours).
+ * Other models keep their own texture files. Sheets are stored by content like every other texture.
+ * Not thread safe, the generation job fills and packs it after the parallel conversion.
+ */
+public class TextureAtlas {
+    /**
+     * Grid every sprite cell is aligned to and sized in, 2^4 for the client's 4 mipmap levels.
+     * Each mipmap level averages 2^k pixel blocks that are aligned to the sheet origin (the client atlas keeps that
+     * alignment), so a block only ever covers one cell and no level mixes neighbouring sprites. The padding of a
+     * cell repeats the sprite's right and bottom edges. Small sprites cost sheet space for it, an 8x8 texture fills
+     * a 16x16 cell.
+     */
+    private static final int CELL_GRID = 16;
+
+    private final Path texturesDir;
+    private final String texturePrefix;
+    private final int maxTextureSize;
+    private final int sheetSize;
+
+    // Models accepted for packing and every texture they use, by texture name
+    private final List<JsonObject> models = new ArrayList<>();
+    private final Map<String, Sprite> sprites = new TreeMap<>();
+    // Textures that were already read, so shared textures are checked once
+    private final Map<String, Sprite> checked = new HashMap<>();
+    private final Set<String> rejected = new HashSet<>();
+    private int sheetCount;
+
+    /**
+     * @param texturesDir The textures directory (assets/&lt;namespace&gt;/textures/item)
+     * @param namespace The pack namespace, only textures of this namespace are packed
+     * @param options The conversion options with the size limits
+     */
+    public TextureAtlas(Path texturesDir, String namespace, ConversionOptions options) {
+        this.texturesDir = texturesDir;
+        this.texturePrefix = namespace + ":item/";
+        this.sheetSize = options.getAtlasSheetSize();
+        this.maxTextureSize = Math.min(options.getAtlasMaxTextureSize(), sheetSize);
+    }
+
+    /**
+     * Registers a converted model for packing, the model is remapped by {@link #pack()}
+     * @param model The converted model JSON
+     * @return true if the model can be packed, false if it keeps its own textures
+     */
+    public boolean add(JsonObject model) throws IOException {
+        if (!model.has("textures") || !model.get("textures").isJsonObject()
+                || !model.has("elements") || !model.get("elements").isJsonArray()) {
+            return false;
+        }
+        JsonObject textures = model.getAsJsonObject("textures");
+        Map<String, Sprite> used = new HashMap<>();
+
+        for (JsonElement e : model.getAsJsonArray("elements")) {
+            if (!e.isJsonObject()) {
+                return false;
+            }
+            JsonObject element = e.getAsJsonObject();
+            if (!element.has("faces") || !element.get("faces").isJsonObject()) {
+                continue;
+            }
+            double[] from = readVector(element, "from");
+            double[] to = readVector(element, "to");
+
+            for (Map.Entry<String, JsonElement> faceEntry : element.getAsJsonObject("faces").entrySet()) {
+                if (!faceEntry.getValue().isJsonObject()) {
+                    return false;
+                }
+                JsonObject face = faceEntry.getValue().getAsJsonObject();
+                String key = textureKey(face);
+                Sprite sprite = key == null ? null : used.get(key);
+                if (sprite == null) {
+                    sprite = key == null ? null : resolve(textures.get(key));
+                    if (sprite == null) {
+                        return false;
+                    }
+                    used.put(key, sprite);
+                }
+
+                double[] uv = faceUv(face, faceEntry.getKey(), from, to);
+                if (uv == null) {
+                    return false;
+                }
+                for (double value : uv) {
+                    if (value < 0 || value > 16) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        if (used.isEmpty()) {
+            return false;
+        }
+        models.add(model);
+        for (Sprite sprite : used.values()) {
+            sprites.putIfAbsent(sprite.name, sprite);
+        }
+        return true;
+    }
+
+    /**
+     * Packs every registered texture into sheets, writes them and remaps the registered models
+     * The models are only changed once every sheet is on disk
+     */
+    public void pack() throws IOException {
+        pack(() -> { });
+    }
+
+    /**
+     * Same as {@link #pack()}
+     * @param checkpoint Run after every sprite copied into a sheet and after every written sheet,
+     *                   the generation job yields to the server there
+     */
+    public void pack(Runnable checkpoint) throws IOException {
+        if (sprites.isEmpty()) {
+            return;
+        }
+
+        // Shelf packing, tallest first so each shelf wastes little height
+        // Each cell starts on the CELL_GRID and holds the sprite at its origin plus the extruded padding
+        List<Sprite> order = new ArrayList<>(sprites.values());
+        order.sort(Comparator.comparingInt((Sprite s) -> s.height).reversed()
+            .thenComparing(Comparator.comparingInt((Sprite s) -> s.width).reversed())
+            .thenComparing(s -> s.name));
+
+        List<Sheet> sheets = new ArrayList<>();
+        Sheet sheet = null;
+        int x = 0, y = 0, shelfHeight = 0;
+        for (Sprite sprite : order) {
+            int cellWidth = cellSize(sprite.width);
+            int cellHeight = cellSize(sprite.height);
+            if (sheet != null && x + cellWidth > sheetSize) {
+                x = 0;
+                y += shelfHeight;
+                shelfHeight = 0;
+            }
+            if (sheet == null || y + cellHeight > sheetSize) {
+                sheet = new Sheet();
+                sheets.add(sheet);
+                x = y = shelfHeight = 0;
+            }
+            sprite.sheet = sheet;
+            sprite.x = x;
+            sprite.y = y;
+            sheet.sprites.add(sprite);
+            sheet.width = Math.max(sheet.width, x + cellWidth);
+            sheet.height = Math.max(sheet.height, y + cellHeight);
+            x += cellWidth;
+            shelfHeight = Math.max(shelfHeight, cellHeight);
+        }
+
+        for (Sheet s : sheets) {
+            writeSheet(s, checkpoint);
+            checkpoint.run();
+        }
+        sheetCount = sheets.size();
+
+        for (JsonObject model : models) {
+            remap(model);
+        }
+    }
+
+    /**
+     * @return The number of models that were packed
+     */
+    public int getModelCount() {
+        return models.size();
+    }
+
+    /**
+     * @return The number of distinct textures that were packed
+     */
+    public int getTextureCount() {
+        return sprites.size();
+    }
+
+    /**
+     * @return The number of sheets written by {@link #pack()}
+     */
+    public int getSheetCount() {
+        return sheetCount;
+    }
+
+    private void writeSheet(Sheet sheet, Runnable checkpoint) throws IOException {
+        // Power of two sides keep every mipmap level of the client atlas available
+        sheet.width = powerOfTwo(sheet.width);
+        sheet.height = powerOfTwo(sheet.height);
+        int[] pixels = new int[sheet.width * sheet.height];
+
+        for (Sprite sprite : sheet.sprites) {
+            int[] size = new int[2];
+            int[] argb = decode(texturesDir.resolve(sprite.name + ".png"), size);
+            if (argb == null || size[0] != sprite.width || size[1] != sprite.height) {
+                throw new IOException("Texture " + sprite.name + " changed while packing the atlas");
+            }
+            // The padding repeats the nearest edge pixel, the corner repeats the corner pixel
+            int cellWidth = cellSize(sprite.width);
+            int cellHeight = cellSize(sprite.height);
+            for (int row = 0; row < cellHeight; row++) {
+                int sourceRow = Math.min(row, sprite.height - 1) * sprite.width;
+                int targetRow = (sprite.y + row) * sheet.width + sprite.x;
+                for (int column = 0; column < cellWidth; column++) {
+                    pixels[targetRow + column] = argb[sourceRow + Math.min(column, sprite.width - 1)];
+                }
+            }
+            checkpoint.run();
+        }
+
+        sheet.name = TextureStore.store(PngOptimizer.encode(pixels, sheet.width, sheet.height), texturesDir);
+    }
+
+    /**
+     * Points every face of a packed model at its sheet and moves its UVs into the sheet space
+     */
+    private void remap(JsonObject model) {
+        JsonObject textures = model.getAsJsonObject("textures");
+        JsonObject remapped = new JsonObject();
+        Map<String, String> sheetKeys = new HashMap<>();
+
+        for (JsonElement e : model.getAsJsonArray("elements")) {
+            JsonObject element = e.getAsJsonObject();
+            if (!element.has("faces") || !element.get("faces").isJsonObject()) {
+                continue;
+            }
+            double[] from = readVector(element, "from");
+            double[] to = readVector(element, "to");
+
+            for (Map.Entry<String, JsonElement> faceEntry : element.getAsJsonObject("faces").entrySet()) {
+                JsonObject face = faceEntry.getValue().getAsJsonObject();
+                Sprite sprite = sprites.get(spriteName(textures.get(textureKey(face))));
+                double[] uv = faceUv(face, faceEntry.getKey(), from, to);
+
+                String key = sheetKeys.get(sprite.sheet.name);
+                if (key == null) {
+                    key = String.valueOf(sheetKeys.size());
+                    sheetKeys.put(sprite.sheet.name, key);
+                    remapped.addProperty(key, texturePrefix + sprite.sheet.name);
+                }
+
+                JsonArray sheetUv = new JsonArray();
+                for (int i = 0; i < 4; i++) {
+                    boolean horizontal = i % 2 == 0;
+                    double offset = horizontal ? sprite.x : sprite.y;
+                    double spriteSize = horizontal ? sprite.width : sprite.height;
+                    double sheetSide = horizontal ? sprite.sheet.width : sprite.sheet.height;
+                    double pixel = offset + uv[i] / 16.0 * spriteSize;
+                    sheetUv.add(Math.round(pixel / sheetSide * 16.0 * 1000000.0) / 1000000.0);
+                }
+                face.add("uv", sheetUv);
+                face.addProperty("texture", "#" + key);
+            }
+        }
+
+        // The particle texture follows its sheet, or stays on its own file when it was not packed
+        if (textures.has("particle")) {
+            Sprite particle = sprites.get(spriteName(textures.get("particle")));
+            if (particle != null) {
+                remapped.addProperty("particle", texturePrefix + particle.sheet.name);
+            } else {
+                remapped.add("particle", textures.get("particle"));
+            }
+        }
+
+        model.add("textures", remapped);
+        // Blockbench hint for the original texture, meaningless for a sheet
+        model.remove("texture_size");
+    }
+
+    /**
+     * Checks whether a texture reference can be packed
+     * @return The texture, or null if it has to stay on its own file
+     */
+    private Sprite resolve(JsonElement reference) throws IOException {
+        String name = spriteName(reference);
+        if (name == null || rejected.contains(name)) {
+            return null;
+        }
+        Sprite sprite = checked.get(name);
+        if (sprite != null) {
+            return sprite;
+        }
+
+        Path file = texturesDir.resolve(name + ".png");
+        if (Files.isRegularFile(file) && !Files.exists(texturesDir.resolve(name + ".png.mcmeta"))) {
+            int[] size = readSize(file);
+            if (size != null && size[0] <= maxTextureSize && size[1] <= maxTextureSize) {
+                // Only fully readable PNGs are packed, the sheet is written with our own encoder
+                int[] decodedSize = new int[2];
+                if (decode(file, decodedSize) != null) {
+                    sprite = new Sprite(name, decodedSize[0], decodedSize[1]);
+                    checked.put(name, sprite);
+                    return sprite;
+                }
+            }
+        }
+        rejected.add(name);
+        return null;
+    }
+
+    /**
+     * @return The texture name behind a "namespace:item/name" reference, or null for any other texture
+     */
+    private String spriteName(JsonElement reference) {
+        if (reference == null || !reference.isJsonPrimitive() || !reference.getAsJsonPrimitive().isString()) {
+            return null;
+        }
+        String path = reference.getAsString();
+        if (!path.startsWith(texturePrefix)) {
+            return null;
+        }
+        String name = path.substring(texturePrefix.length());
+        return name.isEmpty() || name.contains("/") ? null : name;
+    }
+
+    private static String textureKey(JsonObject face) {
+        if (!face.has("texture") || !face.get("texture").isJsonPrimitive()) {
+            return null;
+        }
+        String texture = face.get("texture").getAsString();
+        return texture.startsWith("#") ? texture.substring(1) : null;
+    }
+
+    /**
+     * @return The face UV in 0-16 texture space, Minecraft's automatic UV when the face has none, or null
+     */
+    private static double[] faceUv(JsonObject face, String faceName, double[] from, double[] to) {
+        if (face.has("uv")) {
+            if (!face.get("uv").isJsonArray() || face.getAsJsonArray("uv").size() != 4) {
+                return null;
+            }
+            JsonArray uv = face.getAsJsonArray("uv");
+            double[] values = new double[4];
+            for (int i = 0; i < 4; i++) {
+                if (!uv.get(i).isJsonPrimitive() || !uv.get(i).getAsJsonPrimitive().isNumber()) {
+                    return null;
+                }
+                values[i] = uv.get(i).getAsDouble();
+            }
+            return values;
+        }
+
+        if (from == null || to == null) {
+            return null;
+        }
+        return GeometryOptimizer.autoUv(faceName, from, to);
+    }
+
+    private static double[] readVector(JsonObject element, String key) {
+        if (!element.has(key) || !element.get(key).isJsonArray() || element.getAsJsonArray(key).size() != 3) {
+            return null;
+        }
+        JsonArray array = element.getAsJsonArray(key);
+        double[] values = new double[3];
+        for (int i = 0; i < 3; i++) {
+            if (!array.get(i).isJsonPrimitive() || !array.get(i).getAsJsonPrimitive().isNumber()) {
+                return null;
+            }
+            values[i] = array.get(i).getAsDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Reads width and height from the IHDR chunk without loading the image
+     */
+    private static int[] readSize(Path file) throws IOException {
+        byte[] header = new byte[24];
+        try (InputStream in = Files.newInputStream(file)) {
+            if (in.readNBytes(header, 0, header.length) != header.length) {
+                return null;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        if (buffer.getInt(12) != 0x49484452) { // "IHDR"
+            return null;
+        }
+        return new int[]{buffer.getInt(16), buffer.getInt(20)};
+    }
+
+    private static int[] decode(Path file, int[] size) throws IOException {
+        try {
+            return PngOptimizer.decode(Files.readAllBytes(file), size);
+        } catch (DataFormatException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The side of the cell that holds a sprite side, rounded up to the CELL_GRID
+     */
+    private static int cellSize(int spriteSize) {
+        return (spriteSize + CELL_GRID - 1) / CELL_GRID * CELL_GRID;
+    }
+
+    private static int powerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private static final class Sprite {
+        private final String name;
+        private final int width;
+        private final int height;
+        private Sheet sheet;
+        private int x;
+        private int y;
+
+        private Sprite(String name, int width, int height) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static final class Sheet {
+        private final List<Sprite> sprites = new ArrayList<>();
+        private int width;
+        private int height;
+        private String name;
+    }
+}
@@ -0,0 +1,132 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java;
+
+import com.google.gson.JsonObject;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackJson;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PngOptimizer;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.util.EmbeddedImageReader;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stores textures under a name derived from their content.
+ * Identical PNGs from different models are written once, and different PNGs that share a Blockbench name
+ * no longer overwrite each other.
+ */
+public final class TextureStore {
+    // 64 bits of the SHA-256, collisions are not a concern at a few thousand textures
+    private static final int NAME_LENGTH = 16;
+
+    private TextureStore() {
+    }
+
+    /**
+     * Moves an extracted PNG into the textures directory under its content name
+     * @param image The decoded PNG, its temp file is moved or deleted
+     * @param mcmeta The animation metadata, or null. Part of the content name so an animated copy never shares a file with a static one
+     * @param texturesDir The textures directory (assets/&lt;namespace&gt;/textures/item)
+     * @param options The conversion options, decides whether the PNG is optimized
+     * @return The texture name without .png
+     */
+    public static String store(EmbeddedImageReader.ExtractedImage image, JsonObject mcmeta, Path texturesDir,
+                               ConversionOptions options) throws IOException {
+        String key = image.getSha256();
+        if (options.isOptimizeTextures()) {
+            // Optimized copies get their own names, toggling the option never leaves a stale file in place
+            key = sha256(key + ":optimized");
+        }
+        if (mcmeta != null) {
+            key = sha256(key + mcmeta);
+        }
+        String baseName = key.substring(0, NAME_LENGTH);
+        Path target = texturesDir.resolve(baseName + ".png");
+
+        if (Files.exists(target)) {
+            // Same content is already stored, by an earlier run or another model
+            Files.deleteIfExists(image.getFile());
+            return baseName;
+        }
+
+        if (options.isOptimizeTextures()) {
+            optimize(image, options.getTextureCacheDir());
+        }
+
+        // The .mcmeta goes first, a PNG on disk always has its metadata next to it
+        if (mcmeta != null) {
+            Path tempMcmeta = Files.createTempFile(texturesDir, baseName, ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tempMcmeta, StandardCharsets.UTF_8)) {
+                PackJson.write(mcmeta, writer);
+            }
+            Files.move(tempMcmeta, texturesDir.resolve(baseName + ".png.mcmeta"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // Models are converted in parallel and may store the same texture at once,
+        // the PNG was written to a temp file and is moved so a reader never sees a half-written one
+        Files.move(image.getFile(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return baseName;
+    }
+
+    /**
+     * Writes a generated PNG (an atlas sheet) into the textures directory under its content name
+     * @param png The encoded PNG
+     * @param texturesDir The textures directory (assets/&lt;namespace&gt;/textures/item)
+     * @return The texture name without .png
+     */
+    public static String store(byte[] png, Path texturesDir) throws IOException {
+        String baseName = sha256(png).substring(0, NAME_LENGTH);
+        Path target = texturesDir.resolve(baseName + ".png");
+        if (!Files.exists(target)) {
+            Path temp = Files.createTempFile(texturesDir, baseName, ".tmp");
+            Files.write(temp, png);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return baseName;
+    }
+
+    /**
+     * Replaces the extracted PNG with its optimized form, from the cache when this content was optimized before
+     */
+    private static void optimize(EmbeddedImageReader.ExtractedImage image, Path cacheDir) throws IOException {
+        Path cached = cacheDir == null ? null : cacheDir.resolve(image.getSha256() + ".png");
+        if (cached != null && Files.exists(cached)) {
+            Files.copy(cached, image.getFile(), StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+
+        byte[] original = Files.readAllBytes(image.getFile());
+        byte[] optimized = PngOptimizer.optimize(original);
+        if (optimized != original) {
+            Files.write(image.getFile(), optimized);
+        }
+
+        if (cached != null) {
+            Files.createDirectories(cacheDir);
+            Path tempCached = Files.createTempFile(cacheDir, image.getSha256(), ".tmp");
+            Files.write(tempCached, optimized);
+            Files.move(tempCached, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static String sha256(String text) {
+        return sha256(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] bytes = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.worker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.BBModelToJsonConvert;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.ConversionOptions;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.ConvertedModel;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackJson;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point of the child JVM that converts the models of a generation, started by {@link ConversionWorkerClient}
+ * Reads one job line from stdin, converts every model on its own heap and answers with one line per model.
+ * Only the converter classes and Gson are on its classpath, nothing here may touch Bukkit.
+ *
+ * Job: {"namespace", "textures", "staging", "threads", "options": {...}, "models": [{"name", "file", "firstperson"}]}
+ * Reply per model: {"type": "model", "name", "model": {...}, "firstperson": {...}} or {"type": "error", "name", "message"}
+ * Last reply: {"type": "done"}
+ * Converted model: {"json": staged model file, "textures": [...], "removed-elements", "removed-faces"}
+ */
+public final class ConversionWorker {
+    private static final Gson GSON = new Gson();
+
+    private ConversionWorker() {
+    }
+
+    public static void main(String[] args) {
+        // Replies go to the real stdout, anything else printed by the converter ends up in the plugin log
+        PrintStream replies = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+        System.setOut(System.err);
+
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line = in.readLine();
+            if (line == null) {
+                return;
+            }
+
+            // The plugin closes stdin when the job is cancelled or the server stops, the worker never outlives it
+            Thread watchdog = new Thread(() -> {
+                try {
+                    while (in.read() != -1) {
+                        // Nothing else is sent after the job
+                    }
+                } catch (IOException ignored) {
+                }
+                System.exit(2);
+            }, "HMCPack-Worker-Watchdog");
+            watchdog.setDaemon(true);
+            watchdog.start();
+
+            run(JsonParser.parseString(line).getAsJsonObject(), replies);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    private static void run(JsonObject job, PrintStream replies) throws InterruptedException {
+        ConversionOptions options = readOptions(job.getAsJsonObject("options"));
+        PackJson.setCompact(options.isCompactJson());
+        String namespace = job.get("namespace").getAsString();
+        String texturesPath = job.get("textures").getAsString();
+        Path stagingDir = Paths.get(job.get("staging").getAsString());
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, job.get("threads").getAsInt()));
+        for (JsonElement element : job.getAsJsonArray("models")) {
+            JsonObject model = element.getAsJsonObject();
+            pool.execute(() -> reply(replies, convert(model, namespace, texturesPath, options, stagingDir)));
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+
+        JsonObject done = new JsonObject();
+        done.addProperty("type", "done");
+        reply(replies, done);
+    }
+
+    private static JsonObject convert(JsonObject task, String namespace, String texturesPath, ConversionOptions options, Path stagingDir) {
+        String name = task.get("name").getAsString();
+        JsonObject reply = new JsonObject();
+        reply.addProperty("name", name);
+        try {
+            ConvertedModel model = BBModelToJsonConvert.convert(task.get("file").getAsString(), name, texturesPath, namespace, options);
+            JsonObject staged = stage(name, model, stagingDir);
+
+            JsonObject firstperson = null;
+            if (task.has("firstperson")) {
+                String firstpersonName = name + "_firstperson";
+                ConvertedModel firstpersonModel = BBModelToJsonConvert.convert(task.get("firstperson").getAsString(),
+                    firstpersonName, texturesPath, namespace, options);
+                firstperson = stage(firstpersonName, firstpersonModel, stagingDir);
+            }
+
+            reply.addProperty("type", "model");
+            reply.add("model", staged);
+            if (firstperson != null) {
+                reply.add("firstperson", firstperson);
+            }
+        } catch (Exception e) {
+            reply.addProperty("type", "error");
+            reply.addProperty("message", e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+        return reply;
+    }
+
+    /**
+     * Writes a converted model tree to the staging directory, the plugin reads it back when it merges the model
+     */
+    private static JsonObject stage(String name, ConvertedModel model, Path stagingDir) throws IOException {
+        Path file = stagingDir.resolve(name + ".json");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            GSON.toJson(model.getJson(), writer);
+        }
+
+        JsonObject staged = new JsonObject();
+        staged.addProperty("json", file.toString());
+        JsonArray textures = new JsonArray();
+        for (String textureName : model.getTextureNames()) {
+            textures.add(textureName);
+        }
+        staged.add("textures", textures);
+        if (model.getGeometry() != null) {
+            staged.addProperty("removed-elements", model.getGeometry().getRemovedElements());
+            staged.addProperty("removed-faces", model.getGeometry().getRemovedFaces());
+        }
+        return staged;
+    }
+
+    private static void reply(PrintStream replies, JsonObject reply) {
+        String line = GSON.toJson(reply);
+        synchronized (replies) {
+            replies.println(line);
+        }
+    }
+
+    /**
+     * @return The options as sent in the job line
+     */
+    static JsonObject writeOptions(ConversionOptions options) {
+        JsonObject json = new JsonObject();
+        json.addProperty("optimize-textures", options.isOptimizeTextures());
+        if (options.getTextureCacheDir() != null) {
+            json.addProperty("texture-cache", options.getTextureCacheDir().toString());
+        }
+        json.addProperty("optimize-geometry", options.isOptimizeGeometry());
+        json.addProperty("compact-json", options.isCompactJson());
+        json.addProperty("texture-atlas", options.isTextureAtlas());
+        json.addProperty("atlas-max-texture-size", options.getAtlasMaxTextureSize());
+        json.addProperty("atlas-sheet-size", options.getAtlasSheetSize());
+        return json;
+    }
+
+    static ConversionOptions readOptions(JsonObject json) {
+        ConversionOptions options = new ConversionOptions();
+        options.setOptimizeTextures(json.get("optimize-textures").getAsBoolean());
+        if (json.has("texture-cache")) {
+            options.setTextureCacheDir(Paths.get(json.get("texture-cache").getAsString()));
+        }
+        options.setOptimizeGeometry(json.get("optimize-geometry").getAsBoolean());
+        options.setCompactJson(json.get("compact-json").getAsBoolean());
+        options.setTextureAtlas(json.get("texture-atlas").getAsBoolean());
+        options.setAtlasMaxTextureSize(json.get("atlas-max-texture-size").getAsInt());
+        options.setAtlasSheetSize(json.get("atlas-sheet-size").getAsInt());
+        return options;
+    }
+}
@@ -0,0 +1,303 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.worker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.ConversionOptions;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.ConvertedModel;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.GeometryOptimizer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Runs the model conversion of a generation in a child JVM with its own heap, so the JSON trees and texture
+ * bytes of a large pack never land on the server heap. The worker writes textures into the pack itself and
+ * stages each model tree in a file, the plugin reads one tree at a time when it merges that model.
+ */
+public class ConversionWorkerClient implements Closeable {
+    private static final Gson GSON = new Gson();
+
+    private final Logger logger;
+    private final int heapMb;
+    private final int threads;
+    private final Path stagingDir;
+    // Model name -> reply of the worker, completed by the reader thread
+    private final Map<String, CompletableFuture<Reply>> replies = new ConcurrentHashMap<>();
+    private Process process;
+
+    /**
+     * @param logger Receives everything the worker prints to stderr
+     * @param heapMb The largest heap of the worker in megabytes
+     * @param threads The number of models the worker converts at once
+     * @param stagingDir Where converted model trees wait until they are merged, emptied on start
+     */
+    public ConversionWorkerClient(Logger logger, int heapMb, int threads, Path stagingDir) {
+        this.logger = logger;
+        this.heapMb = heapMb;
+        this.threads = threads;
+        this.stagingDir = stagingDir;
+    }
+
+    /**
+     * Starts the worker and sends it every model of the run
+     * @param models Model name -> .bbmodel file and firstperson .bbmodel file (or null)
+     * @param texturesPath The textures directory of the pack
+     * @param namespace The pack namespace
+     * @param options The converter settings of the run
+     * @param onConverted Called on the reader thread after each model, for progress messages
+     * @return Model name -> its reply, failed with an IOException if the model or the worker failed
+     * @throws IOException If the worker could not be started
+     */
+    public Map<String, CompletableFuture<Reply>> start(Map<String, File[]> models, String texturesPath, String namespace,
+                                                       ConversionOptions options, Runnable onConverted) throws IOException {
+        clearStaging();
+
+        JsonObject job = new JsonObject();
+        job.addProperty("namespace", namespace);
+        job.addProperty("textures", texturesPath);
+        job.addProperty("staging", stagingDir.toAbsolutePath().toString());
+        job.addProperty("threads", threads);
+        job.add("options", ConversionWorker.writeOptions(options));
+        JsonArray tasks = new JsonArray();
+        Map<String, CompletableFuture<Reply>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, File[]> entry : models.entrySet()) {
+            JsonObject task = new JsonObject();
+            task.addProperty("name", entry.getKey());
+            task.addProperty("file", entry.getValue()[0].getAbsolutePath());
+            if (entry.getValue()[1] != null) {
+                task.addProperty("firstperson", entry.getValue()[1].getAbsolutePath());
+            }
+            tasks.add(task);
+            CompletableFuture<Reply> reply = new CompletableFuture<>();
+            replies.put(entry.getKey(), reply);
+            result.put(entry.getKey(), reply);
+        }
+        job.add("models", tasks);
+
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable());
+        command.add("-Xmx" + heapMb + "m");
+        command.add("-Djava.awt.headless=true");
+        command.add("-cp");
+        command.add(classpath());
+        command.add(ConversionWorker.class.getName());
+        process = new ProcessBuilder(command).start();
+
+        startThread("HMCPack-Worker-Log", this::readErrors);
+        startThread("HMCPack-Worker-Replies", () -> readReplies(onConverted));
+
+        // stdin stays open after the job line, closing it tells the worker to stop
+        Writer stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        stdin.write(GSON.toJson(job));
+        stdin.write('\n');
+        stdin.flush();
+        return result;
+    }
+
+    private void readReplies(Runnable onConverted) {
+        String failure = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JsonObject reply = JsonParser.parseString(line).getAsJsonObject();
+                String type = reply.get("type").getAsString();
+                if (type.equals("done")) {
+                    break;
+                }
+                CompletableFuture<Reply> future = replies.remove(reply.get("name").getAsString());
+                if (future == null) {
+                    continue;
+                }
+                if (type.equals("model")) {
+                    future.complete(new Reply(reply.getAsJsonObject("model"),
+                        reply.has("firstperson") ? reply.getAsJsonObject("firstperson") : null));
+                } else {
+                    future.completeExceptionally(new IOException(reply.get("message").getAsString()));
+                }
+                onConverted.run();
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = "Conversion worker stopped responding: " + e.getMessage();
+        }
+
+        if (!replies.isEmpty()) {
+            if (failure == null) {
+                failure = "Conversion worker exited before converting every model" + exitCode();
+            }
+            failAll(failure);
+        }
+    }
+
+    private void readErrors() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                logger.warning("[Worker] " + line);
+            }
+        } catch (IOException ignored) {
+            // The worker was stopped
+        }
+    }
+
+    private String exitCode() {
+        try {
+            if (process.waitFor(5, TimeUnit.SECONDS)) {
+                return " (exit code " + process.exitValue() + ", raise worker-heap-mb if it ran out of memory)";
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "";
+    }
+
+    private void failAll(String message) {
+        for (String name : new ArrayList<>(replies.keySet())) {
+            CompletableFuture<Reply> future = replies.remove(name);
+            if (future != null) {
+                future.completeExceptionally(new IOException(message));
+            }
+        }
+    }
+
+    /**
+     * Stops the worker if it still runs and removes staged models that were never merged
+     */
+    @Override
+    public void close() {
+        if (process != null) {
+            try {
+                process.getOutputStream().close();
+            } catch (IOException ignored) {
+                // Already gone
+            }
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        failAll("Conversion worker was stopped");
+        try {
+            clearStaging();
+        } catch (IOException e) {
+            logger.warning("Could not clean the worker staging directory: " + e.getMessage());
+        }
+    }
+
+    private void clearStaging() throws IOException {
+        Files.createDirectories(stagingDir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(stagingDir, "*.json")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static String javaExecutable() {
+        boolean windows = System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+        return Paths.get(System.getProperty("java.home"), "bin", windows ? "java.exe" : "java").toString();
+    }
+
+    /**
+     * The plugin jar and the Gson jar of the server, everything the worker loads
+     */
+    private static String classpath() throws IOException {
+        Set<String> entries = new LinkedHashSet<>();
+        entries.add(codeSource(ConversionWorker.class));
+        entries.add(codeSource(Gson.class));
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static String codeSource(Class<?> type) throws IOException {
+        CodeSource source = type.getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null) {
+            throw new IOException("Cannot locate the jar of " + type.getName() + " for the conversion worker");
+        }
+        try {
+            return Paths.get(source.getLocation().toURI()).toString();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Cannot locate the jar of " + type.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * What the worker converted for one model, the trees stay on disk until loaded
+     */
+    public static final class Reply {
+        private final JsonObject model;
+        private final JsonObject firstperson;
+
+        private Reply(JsonObject model, JsonObject firstperson) {
+            this.model = model;
+            this.firstperson = firstperson;
+        }
+
+        /**
+         * Reads the staged main model and deletes the staged file
+         */
+        public ConvertedModel loadModel() throws IOException {
+            return load(model);
+        }
+
+        /**
+         * @return The staged firstperson model, or null if the model has none
+         */
+        public ConvertedModel loadFirstpersonModel() throws IOException {
+            return firstperson != null ? load(firstperson) : null;
+        }
+
+        private static ConvertedModel load(JsonObject staged) throws IOException {
+            Path file = Paths.get(staged.get("json").getAsString());
+            JsonObject json;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                json = JsonParser.parseReader(reader).getAsJsonObject();
+            } catch (RuntimeException e) {
+                throw new IOException("Staged model " + file.getFileName() + " is invalid: " + e.getMessage());
+            }
+            Files.deleteIfExists(file);
+
+            List<String> textureNames = new ArrayList<>();
+            for (JsonElement textureName : staged.getAsJsonArray("textures")) {
+                textureNames.add(textureName.getAsString());
+            }
+            GeometryOptimizer.Result geometry = staged.has("removed-elements")
+                ? new GeometryOptimizer.Result(staged.get("removed-elements").getAsInt(), staged.get("removed-faces").getAsInt())
+                : null;
+            return new ConvertedModel(json, textureNames, geometry);
+        }
+    }
+}
@@ -3,6 +3,8 @@ package gg.bckd00r.community.plugin.HMCCosmeticsRP.generator;
 import com.google.gson.*;
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.HMCCosmeticsPackPlugin;
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.ConvertedModel;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackJson;
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackUtils;
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.util.FileUtils;
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.util.TransferUtils;
@@ -15,8 +17,6 @@ import org.bukkit.plugin.Plugin;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -32,11 +32,16 @@ public class CosmeticYMLGenerator {
         "helmet", "backpack", "chestplate", "leggings", "boots", "offhand", "balloon"
     ));
 
-    public CosmeticYMLGenerator(HMCCosmeticsPackPlugin plugin, String namespace) {
+    /**
+     * @param plugin The plugin instance
+     * @param namespace The namespace for the cosmetics
+     * @param hmcPlugin The HMCCosmetics plugin, looked up on the main thread by the caller (may be null)
+     */
+    public CosmeticYMLGenerator(HMCCosmeticsPackPlugin plugin, String namespace, Plugin hmcPlugin) {
         this.plugin = plugin;
         this.namespace = namespace.toLowerCase();
         this.tempDir = new File(plugin.getDataFolder(), "temp/" + namespace  + "_items"); //"temp/hmc_items"
-        this.hmcPlugin = plugin.getServer().getPluginManager().getPlugin("HMCCosmetics");
+        this.hmcPlugin = hmcPlugin;
 
         if (!tempDir.exists() && !tempDir.mkdirs()) {
             plugin.getLogger().warning("Failed to create temp directory: " + tempDir.getAbsolutePath());
@@ -81,72 +86,51 @@ public class CosmeticYMLGenerator {
         }
     }
     
-    public void loadAndProcessModel(File modelFile, String modelName) throws IOException {
-        if (!modelFile.exists()) {
+    /**
+     * Applies the stored display overrides to a converted firstperson model and writes it
+     * @param modelName The model name including the _firstperson suffix
+     * @param model The converted model, its JSON is modified in place
+     * @param outputFile Where the model JSON is written
+     */
+    public void processFirstpersonModel(String modelName, ConvertedModel model, File outputFile) throws IOException {
+        if (!applyDisplayOverrides(modelName, model.getJson())) {
             return;
         }
-        
-        String jsonContent = new String(Files.readAllBytes(modelFile.toPath()), StandardCharsets.UTF_8);
-        JsonObject model = JsonParser.parseString(jsonContent).getAsJsonObject();
-        
+
+        writeModel(outputFile, model.getJson());
+
+        if (modelName.endsWith("_firstperson")) {
+            String firstpersonModelPath = namespace + ":item/" + modelName;
+            generateNamespaceItemDefinition(modelName, firstpersonModelPath);
+        }
+    }
+
+    /**
+     * Registers the model with the data manager and replaces its display section with the stored overrides
+     * @param modelName The name the display data is stored under
+     * @param model The model JSON, modified in place
+     * @return false if the data manager could not provide data for the model
+     */
+    private boolean applyDisplayOverrides(String modelName, JsonObject model) {
         DataManager.ModelData modelData = plugin.getDataManager().ensureModelExists(modelName, model);
         if (modelData == null) {
-            return;
-        }
-        
-        if (!modelData.getDisplayData().isEmpty()) {
-            JsonObject displayObj = new JsonObject();
-            
-            for (Map.Entry<String, Map<String, Object>> entry : modelData.getDisplayData().entrySet()) {
-                String displayType = entry.getKey();
-                JsonObject displayTypeObj = new JsonObject();
-                
-                for (Map.Entry<String, Object> prop : entry.getValue().entrySet()) {
-                    String propKey = prop.getKey();
-                    Object value = prop.getValue();
-                    
-                    if (value instanceof List) {
-                        JsonArray array = new JsonArray();
-                        for (Object item : (List<?>) value) {
-                            if (item instanceof Number) {
-                                array.add(((Number) item).doubleValue());
-                            } else if (item instanceof Boolean) {
-                                array.add((Boolean) item);
-                            } else if (item != null) {
-                                array.add(item.toString());
-                            }
-                        }
-                        displayTypeObj.add(propKey, array);
-                    } else if (value instanceof Number) {
-                        displayTypeObj.addProperty(propKey, ((Number) value).doubleValue());
-                    } else if (value instanceof Boolean) {
-                        displayTypeObj.addProperty(propKey, (Boolean) value);
-                    } else if (value != null) {
-                        displayTypeObj.addProperty(propKey, value.toString());
-                    }
-                }
-                
-                if (displayTypeObj.size() > 0) {
-                    displayObj.add(displayType, displayTypeObj);
-                }
-            }
-            
-            if (displayObj.size() > 0) {
-                model.add("display", displayObj);
-            }
+            return false;
         }
         
-        try (FileWriter writer = new FileWriter(modelFile)) {
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            gson.toJson(model, writer);
-        } catch (IOException e) {
-            throw e;
+        // Built once per override change, the model only references it
+        JsonObject displayObj = modelData.getDisplayJson();
+        if (displayObj.size() > 0) {
+            model.add("display", displayObj);
         }
-        
-        if (modelName.endsWith("_firstperson")) {
-            String baseName = modelName.replace("_firstperson", "");
-            String firstpersonModelPath = namespace + ":item/" + modelName;
-            generateNamespaceItemDefinition(modelName, firstpersonModelPath);
+        return true;
+    }
+
+    /**
+     * Writes a finished model JSON, this is the only place a model file is written during generation
+     */
+    private void writeModel(File outputFile, JsonObject model) throws IOException {
+        try (FileWriter writer = new FileWriter(outputFile)) {
+            PackJson.writeModel(model, writer);
         }
     }
     
@@ -177,8 +161,7 @@ public class CosmeticYMLGenerator {
             File itemFile = new File(namespaceItemsDir, fileName.toLowerCase() + ".json");
             
             try (FileWriter writer = new FileWriter(itemFile)) {
-                Gson gson = new GsonBuilder().setPrettyPrinting().create();
-                gson.toJson(root, writer);
+                PackJson.write(root, writer);
             } catch (IOException e) {
                 throw e;
             }
@@ -202,80 +185,48 @@ public class CosmeticYMLGenerator {
         return false;
     }
 
-    private JsonObject loadAndProcessModel(File modelFile) throws IOException {
-        String fileName = modelFile.getName().replace(".json", "").toLowerCase();
-        
-        if (!isValidCosmeticType(fileName)) {
-            return null;
+    /**
+     * Applies display overrides to a converted model, writes it and adds its cosmetic entry
+     * @param fileName The model name (the output file name without .json)
+     * @param model The converted model, its JSON is modified in place
+     * @param outputFile Where the model JSON is written
+     * @param hasFirstperson Whether a firstperson variant exists for this model
+     * @return The cosmetic type, or null if the model was skipped
+     */
+    public String generateYMLFiles(String fileName, ConvertedModel model, File outputFile, boolean hasFirstperson) throws IOException {
+        fileName = fileName.toLowerCase();
+        boolean processed;
+        try {
+            processed = isValidCosmeticType(fileName) && applyDisplayOverrides(fileName, model.getJson());
+        } catch (Exception e) {
+            processed = false;
         }
-        String jsonContent = new String(Files.readAllBytes(modelFile.toPath()), StandardCharsets.UTF_8);
-        JsonObject model = JsonParser.parseString(jsonContent).getAsJsonObject();
-        
-        DataManager.ModelData modelData = plugin.getDataManager().ensureModelExists(fileName, model);
-        if (modelData == null) {
+
+        // Written once, with or without overrides, so skipped models still end up in the pack as converted
+        writeModel(outputFile, model.getJson());
+        if (!processed) {
             return null;
         }
-        
-        if (!modelData.getDisplayData().isEmpty()) {
-            JsonObject displayObj = new JsonObject();
-            
-            for (Map.Entry<String, Map<String, Object>> entry : modelData.getDisplayData().entrySet()) {
-                String displayType = entry.getKey();
-                JsonObject displayTypeObj = new JsonObject();
-                
-                for (Map.Entry<String, Object> prop : entry.getValue().entrySet()) {
-                    String propKey = prop.getKey();
-                    Object value = prop.getValue();
-                    
-                    if (value instanceof List) {
-                        JsonArray array = new JsonArray();
-                        for (Object item : (List<?>) value) {
-                            if (item instanceof Number) {
-                                array.add(((Number) item).doubleValue());
-                            } else if (item instanceof Boolean) {
-                                array.add((Boolean) item);
-                            } else if (item != null) {
-                                array.add(item.toString());
-                            }
-                        }
-                        displayTypeObj.add(propKey, array);
-                    } else if (value instanceof Number) {
-                        displayTypeObj.addProperty(propKey, ((Number) value).doubleValue());
-                    } else if (value instanceof Boolean) {
-                        displayTypeObj.addProperty(propKey, (Boolean) value);
-                    } else if (value != null) {
-                        displayTypeObj.addProperty(propKey, value.toString());
-                    }
-                }
-                
-                if (displayTypeObj.size() > 0) {
-                    displayObj.add(displayType, displayTypeObj);
-                }
-            }
-            
-            if (displayObj.size() > 0) {
-                model.add("display", displayObj);
-            }
-        }
-        
-        return model;
-    }
-    
-    public String generateYMLFiles(File modelFile) throws IOException {
-        return generateYMLFiles(modelFile, false);
+
+        return addCosmetic(fileName, hasFirstperson, isModelPaintable(model), true);
     }
-    
-    public String generateYMLFiles(File modelFile, boolean hasFirstperson) throws IOException {
-        JsonObject model;
-        try {
-            model = loadAndProcessModel(modelFile);
-            if (model == null) {
-                return null;
-            }
-        } catch (Exception e) {
+
+    /**
+     * Adds the cosmetic entry of a model that was converted in an earlier run and is reused unchanged
+     * @param fileName The model name
+     * @param hasFirstperson Whether a firstperson variant exists for this model
+     * @param isPaintable Whether the model was paintable when it was converted
+     * @return The cosmetic type, or null if the model was skipped
+     */
+    public String addReusedModel(String fileName, boolean hasFirstperson, boolean isPaintable) {
+        fileName = fileName.toLowerCase();
+        if (!isValidCosmeticType(fileName)) {
             return null;
         }
-        String fileName = modelFile.getName().replace(".json", "").toLowerCase();
+        return addCosmetic(fileName, hasFirstperson, isPaintable, false);
+    }
+
+    private String addCosmetic(String fileName, boolean hasFirstperson, boolean isPaintable, boolean writeItemDefinition) {
         String[] nameParts = fileName.split("_");
         
         String type = "";
@@ -288,20 +239,9 @@ public class CosmeticYMLGenerator {
                 break;
             }
         }
-        
-
-        File outputFile = new File(modelFile.getParentFile(), modelFile.getName());
-        try (FileWriter writer = new FileWriter(outputFile)) {
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            gson.toJson(model, writer);
-        } catch (IOException e) {
-            throw e;
-        }
-
-        boolean isPaintable = isModelPaintable(model);
 
         if (type.isEmpty()) {
-            throw new IllegalArgumentException("Invalid filename: " + modelFile.getName() + " - Missing type (HELMET, BACKPACK, etc.)");
+            throw new IllegalArgumentException("Invalid filename: " + fileName + ".json - Missing type (HELMET, BACKPACK, etc.)");
         }
         FileConfiguration config = cosmeticsByType.computeIfAbsent(type.toLowerCase(), k -> new YamlConfiguration());
         String[] displayNameParts = displayName.split(" ");
@@ -340,7 +280,9 @@ public class CosmeticYMLGenerator {
         
         addFirstPersonItem(config, fileName, type, modelPath, itemModelPath, hasFirstperson, isPaintable);
         
-        generateNamespaceItemDefinition(fileName, modelPath);
+        if (writeItemDefinition) {
+            generateNamespaceItemDefinition(fileName, modelPath);
+        }
 
         config.set(fileName + ".item.amount", 1);
         
@@ -365,11 +307,28 @@ public class CosmeticYMLGenerator {
             }
         }
         
-        saveAllCosmetics();
+        return type;
+    }
 
+    /**
+     * Commit phase of a generation run: writes everything accumulated by {@link #generateYMLFiles}
+     * Call once after all models have been added
+     * @return true if menu files were generated successfully, false otherwise
+     */
+    public boolean commit() {
+        return commit(() -> { });
+    }
+
+    /**
+     * Same as {@link #commit()}
+     * @param afterStep Run after every written type file and after the menu and transfer steps,
+     *                  the generation job yields to the server there
+     * @return true if menu files were generated successfully, false otherwise
+     */
+    public boolean commit(Runnable afterStep) {
+        boolean menusGenerated = saveAllCosmetics(afterStep);
         PackUtils.generatePackMcmeta();
-        PackUtils.copyResourcePackToExternalPath();
-        return type;
+        return menusGenerated;
     }
 
     /**
@@ -377,8 +336,12 @@ public class CosmeticYMLGenerator {
      * @return true if all operations completed successfully, false otherwise
      */
     public boolean saveAllCosmetics() {
+        return saveAllCosmetics(() -> { });
+    }
+
+    private boolean saveAllCosmetics(Runnable afterStep) {
         // First save cosmetics to temp directory
-        saveCosmetics(tempDir, false);
+        saveCosmetics(tempDir, false, afterStep);
         
         // Build map of cosmetics by type for menu generation
         Map<String, List<String>> cosmeticsByType = buildCosmeticsByTypeMap();
@@ -388,9 +351,11 @@ public class CosmeticYMLGenerator {
         if (!menusGenerated) {
             plugin.getLogger().warning("Failed to generate menu files");
         }
+        afterStep.run();
         
         // Transfer menu files from temp to HMCCosmetics
         TransferUtils.transferMenuFilesToHMCCosmetics(plugin, namespace, hmcPlugin);
+        afterStep.run();
         
         // Handle file transfer based on configuration
         if (plugin.getConfigManager().shouldTransferGeneratedCosmeticYmlFiles()) {
@@ -434,7 +399,7 @@ public class CosmeticYMLGenerator {
         return result;
     }
     
-    private void saveCosmetics(File targetDir, boolean mergeExisting) {
+    private void saveCosmetics(File targetDir, boolean mergeExisting, Runnable afterFile) {
         if (!targetDir.exists() && !targetDir.mkdirs()) {
             return;
         }
@@ -458,21 +423,25 @@ public class CosmeticYMLGenerator {
                 
             } catch (Exception e) {
             }
+            afterFile.run();
         }
     }
     
-    private boolean isModelPaintable(JsonObject model) {
+    /**
+     * @return true if the model uses layer/overlay textures or tinted faces and can be dyed
+     */
+    public boolean isModelPaintable(ConvertedModel convertedModel) {
         try {
-            if (model.has("textures") && model.get("textures").isJsonObject()) {
-                JsonObject textures = model.getAsJsonObject("textures");
-                for (Map.Entry<String, JsonElement> entry : textures.entrySet()) {
-                    String textureName = entry.getValue().getAsString().toLowerCase();
-                    if (textureName.contains("layer") || textureName.contains("overlay")) {
-                        return true;
-                    }
+            // Texture files are named by content, the check uses the Blockbench names
+            for (String textureName : convertedModel.getTextureNames()) {
+                textureName = textureName.toLowerCase();
+                if (textureName.contains("layer") || textureName.contains("overlay")) {
+                    return true;
                 }
             }
             
+            JsonObject model = convertedModel.getJson();
+            
             if (model.has("elements") && model.get("elements").isJsonArray()) {
                 JsonArray elements = model.getAsJsonArray("elements");
                 for (JsonElement element : elements) {
@@ -2,6 +2,9 @@ package gg.bckd00r.community.plugin.HMCCosmeticsRP.generator;
 
 import com.google.gson.*;
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.HMCCosmeticsPackPlugin;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.config.ModelDataRegistry;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackJson;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackTarget;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
@@ -11,43 +14,72 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * Collects the custom model data models of a generation and writes the item definitions for them
+ * Safe to call from several threads: lookups of known models take no lock, only a new model briefly locks
+ * its ID allocation and the reverse index.
+ */
 public class CustomModelDataGenerator {
     private final HMCCosmeticsPackPlugin plugin;
-    private final Map<String, List<ModelEntry>> modelEntries = new HashMap<>();
-    private final AtomicInteger currentModelData;
+    // Material name as passed in and in upper case -> the same entries of that material
+    private final ConcurrentHashMap<String, MaterialEntries> materials = new ConcurrentHashMap<>();
+    // Custom model data -> entry, IDs are unique across materials
+    private final IdIndex idIndex = new IdIndex();
+    private final ModelDataRegistry registry;
     
     public CustomModelDataGenerator(HMCCosmeticsPackPlugin plugin) {
         this.plugin = plugin;
-        // Get custom model data start value from config
-        int startValue = plugin.getConfigManager().getCustomModelDataStart();
-        this.currentModelData = new AtomicInteger(startValue);
+        this.registry = new ModelDataRegistry(plugin.getDataFolder());
     }
     
     /**
-     * Resets the generator state - clears all registered models and resets counter
+     * Resets the generator state - clears all registered models and reloads the ID registry
      * Should be called at the start of each generation process
      */
     public void reset() {
-        modelEntries.clear();
-        ModelEntry.clearCache();
-        int startValue = plugin.getConfigManager().getCustomModelDataStart();
-        this.currentModelData.set(startValue);
+        materials.clear();
+        idIndex.clear();
+        registry.load();
+        registry.startRun();
     }
     
     /**
-     * Registers a new model for custom model data
+     * Registers a model for custom model data
+     * A model keeps the ID it had in earlier runs, a new model gets the lowest free ID from custom-model-data-start
      * @param material The material this model is for (e.g., "PAPER", "LEATHER_HORSE_ARMOR")
      * @param modelPath The path to the model (e.g., "hmc:item/hat1")
      * @return The custom model data value assigned to this model
      */
     public int registerModel(String material, String modelPath) {
-        int modelData = currentModelData.getAndIncrement();
-        ModelEntry entry = ModelEntry.create(modelData, modelPath, material.toUpperCase());
-        modelEntries.computeIfAbsent(material.toUpperCase(), k -> new ArrayList<>())
-                  .add(entry);
-        return modelData;
+        MaterialEntries entries = materials.get(material);
+        if (entries == null) {
+            String canonical = material.toUpperCase();
+            entries = materials.computeIfAbsent(canonical, MaterialEntries::new);
+            materials.putIfAbsent(material, entries);
+        }
+
+        ModelEntry entry = entries.find(modelPath);
+        if (entry != null) {
+            return entry.getModelData();
+        }
+
+        String pathKey = modelPath.toLowerCase();
+        MaterialEntries owner = entries;
+        entry = entries.byPath.computeIfAbsent(pathKey, k -> {
+            int modelData = registry.allocate(owner.material, modelPath, plugin.getConfigManager().getCustomModelDataStart());
+            ModelEntry created = new ModelEntry(modelData, modelPath, owner.material);
+            owner.sorted.add(created);
+            idIndex.put(created);
+            return created;
+        });
+        if (!pathKey.equals(modelPath)) {
+            entries.byPath.putIfAbsent(modelPath, entry);
+        }
+        return entry.getModelData();
     }
     
     /**
@@ -57,99 +89,174 @@ public class CustomModelDataGenerator {
      * @return The custom model data value, or -1 if not found
      */
     public int getModelData(String material, String modelPath) {
-        ModelEntry entry = ModelEntry.find(material, modelPath);
+        if (material == null || modelPath == null) {
+            return -1;
+        }
+        MaterialEntries entries = materials.get(material);
+        if (entries == null) {
+            entries = materials.get(material.toUpperCase());
+        }
+        ModelEntry entry = entries != null ? entries.find(modelPath) : null;
         return entry != null ? entry.getModelData() : -1;
     }
+
+    /**
+     * Reverse lookup of a registered model
+     * @param modelData The custom model data value
+     * @return The model path (e.g., "hmc:item/hat1"), or null if no model of this generation has the ID
+     */
+    public String getModelPath(int modelData) {
+        ModelEntry entry = idIndex.get(modelData);
+        return entry != null ? entry.getModelPath() : null;
+    }
     
     /**
-     * Generates all the necessary JSON files for custom model data
-     * Creates both legacy (models/item/) and modern (items/) formats for maximum compatibility
+     * Generates the item files for custom model data in the formats the pack-target setting needs
+     * modern: assets/minecraft/items/ range_dispatch definitions (1.21.4+)
+     * legacy: assets/minecraft/models/item/ model overrides (before 1.21.4)
+     * both: the modern definitions plus the overrides in an overlay that only older clients load
      */
     public void generateModelJsons() {
-        // Create the directory structure for both formats
+        generateModelJsons(() -> { });
+    }
+
+    /**
+     * Same as {@link #generateModelJsons()}
+     * @param afterItem Run after the files of every material are written, the generation job yields to the server there
+     */
+    public void generateModelJsons(Runnable afterItem) {
+        PackTarget target = plugin.getConfigManager().getPackTarget();
         String packId = plugin.getConfigManager().getResourcePackId();
         File outputDir = new File(plugin.getDataFolder(), "output/" + packId);
-        File assetsDir = new File(outputDir, "assets");
-        File minecraftDir = new File(assetsDir, "minecraft");
         
         // Modern format: assets/minecraft/items/
-        File itemsDir = new File(minecraftDir, "items");
-        if (!itemsDir.exists() && !itemsDir.mkdirs()) {
+        File itemsDir = new File(outputDir, "assets/minecraft/items");
+        // Legacy format: [overlay/]assets/minecraft/models/item/
+        File baseModelsItemDir = new File(outputDir, "assets/minecraft/models/item");
+        File overlayModelsItemDir = new File(outputDir, PackTarget.LEGACY_OVERLAY + "/assets/minecraft/models/item");
+        File modelsItemDir = target == PackTarget.BOTH ? overlayModelsItemDir : baseModelsItemDir;
+
+        if (target.writesItemDefinitions() && !itemsDir.exists() && !itemsDir.mkdirs()) {
             plugin.getLogger().warning("Failed to create directory: " + itemsDir.getAbsolutePath());
             return;
         }
-        
-        // Legacy format: assets/minecraft/models/item/
-        File modelsDir = new File(minecraftDir, "models");
-        File modelsItemDir = new File(modelsDir, "item");
-        if (!modelsItemDir.exists() && !modelsItemDir.mkdirs()) {
+        if (target.writesModelOverrides() && !modelsItemDir.exists() && !modelsItemDir.mkdirs()) {
             plugin.getLogger().warning("Failed to create directory: " + modelsItemDir.getAbsolutePath());
             return;
         }
         
         // Generate JSON for each material
-        for (Map.Entry<String, List<ModelEntry>> entry : modelEntries.entrySet()) {
-            String material = entry.getKey();
-            List<ModelEntry> entries = entry.getValue();
+        for (MaterialEntries materialEntries : new TreeSet<>(materials.values())) {
+            String material = materialEntries.material;
+            String fileName = material.toLowerCase() + ".json";
+            // Kept sorted by ID, range_dispatch thresholds must ascend
+            List<ModelEntry> entries = new ArrayList<>(materialEntries.sorted);
+
+            // Files of the other target stay behind in incremental runs, old clients would still load them
+            if (!target.writesItemDefinitions()) {
+                deleteStale(new File(itemsDir, fileName));
+            }
+            if (!target.writesModelOverrides() || target == PackTarget.BOTH) {
+                deleteStale(new File(baseModelsItemDir, fileName));
+            }
+            if (target != PackTarget.BOTH) {
+                deleteStale(new File(overlayModelsItemDir, fileName));
+            }
             
             // === MODERN FORMAT (items/) ===
-            JsonObject modernRoot = new JsonObject();
-            JsonObject modernModelObj = new JsonObject();
-            modernRoot.add("model", modernModelObj);
-            
-            modernModelObj.addProperty("type", "range_dispatch");
-            modernModelObj.addProperty("property", "custom_model_data");
+            if (target.writesItemDefinitions()) {
+                JsonObject modernRoot = new JsonObject();
+                JsonObject modernModelObj = new JsonObject();
+                modernRoot.add("model", modernModelObj);
 
-            JsonArray modernEntriesArray = getJsonElements(entries);
-            modernModelObj.add("entries", modernEntriesArray);
-            
-            // Add fallback model for modern format
-            JsonObject modernFallback = new JsonObject();
-            modernFallback.addProperty("type", "model");
-            modernFallback.addProperty("model", "item/" + material.toLowerCase());
-            modernModelObj.add("fallback", modernFallback);
-            
-            // Write modern format to items directory
-            File modernOutputFile = new File(itemsDir, material.toLowerCase() + ".json");
-            try (FileWriter writer = new FileWriter(modernOutputFile)) {
-                Gson gson = new GsonBuilder().setPrettyPrinting().create();
-                gson.toJson(modernRoot, writer);
-                plugin.getLogger().info("Generated modern format: " + modernOutputFile.getAbsolutePath());
-            } catch (IOException e) {
-                plugin.getLogger().warning("Failed to write modern format for " + material + ": " + e.getMessage());
+                modernModelObj.addProperty("type", "range_dispatch");
+                modernModelObj.addProperty("property", "custom_model_data");
+
+                JsonArray modernEntriesArray = getJsonElements(entries);
+                modernModelObj.add("entries", modernEntriesArray);
+
+                // Add fallback model for modern format
+                JsonObject modernFallback = new JsonObject();
+                modernFallback.addProperty("type", "model");
+                modernFallback.addProperty("model", "item/" + material.toLowerCase());
+                modernModelObj.add("fallback", modernFallback);
+
+                // Write modern format to items directory
+                File modernOutputFile = new File(itemsDir, fileName);
+                try (FileWriter writer = new FileWriter(modernOutputFile)) {
+                    PackJson.write(modernRoot, writer);
+                    plugin.getLogger().info("Generated modern format: " + modernOutputFile.getAbsolutePath());
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Failed to write modern format for " + material + ": " + e.getMessage());
+                }
             }
             
             // === LEGACY FORMAT (models/item/) ===
-            JsonObject legacyRoot = new JsonObject();
-            JsonArray overrides = new JsonArray();
-            
-            // Add overrides for each model
-            for (ModelEntry modelEntry : entries) {
-                JsonObject override = new JsonObject();
-                JsonObject predicate = new JsonObject();
-                predicate.addProperty("custom_model_data", modelEntry.getModelData());
-                override.add("predicate", predicate);
-                override.addProperty("model", modelEntry.getModelPath());
-                overrides.add(override);
-            }
-            
-            legacyRoot.add("overrides", overrides);
-            legacyRoot.addProperty("parent", "minecraft:item/generated");
-            
-            // Add textures
-            JsonObject textures = new JsonObject();
-            textures.addProperty("layer0", "minecraft:item/" + material.toLowerCase());
-            legacyRoot.add("textures", textures);
-            
-            // Write legacy format to models/item directory
-            File legacyOutputFile = new File(modelsItemDir, material.toLowerCase() + ".json");
-            try (FileWriter writer = new FileWriter(legacyOutputFile)) {
-                Gson gson = new GsonBuilder().setPrettyPrinting().create();
-                gson.toJson(legacyRoot, writer);
-                plugin.getLogger().info("Generated legacy format: " + legacyOutputFile.getAbsolutePath());
-            } catch (IOException e) {
-                plugin.getLogger().warning("Failed to write legacy format for " + material + ": " + e.getMessage());
+            if (target.writesModelOverrides()) {
+                JsonObject legacyRoot = new JsonObject();
+                JsonArray overrides = new JsonArray();
+
+                // Add overrides for each model
+                for (ModelEntry modelEntry : entries) {
+                    JsonObject override = new JsonObject();
+                    JsonObject predicate = new JsonObject();
+                    predicate.addProperty("custom_model_data", modelEntry.getModelData());
+                    override.add("predicate", predicate);
+                    override.addProperty("model", modelEntry.getModelPath());
+                    overrides.add(override);
+                }
+
+                legacyRoot.add("overrides", overrides);
+                legacyRoot.addProperty("parent", "minecraft:item/generated");
+
+                // Add textures
+                JsonObject textures = new JsonObject();
+                textures.addProperty("layer0", "minecraft:item/" + material.toLowerCase());
+                legacyRoot.add("textures", textures);
+
+                // Write legacy format to models/item directory
+                File legacyOutputFile = new File(modelsItemDir, fileName);
+                try (FileWriter writer = new FileWriter(legacyOutputFile)) {
+                    PackJson.writeModel(legacyRoot, writer);
+                    plugin.getLogger().info("Generated legacy format: " + legacyOutputFile.getAbsolutePath());
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Failed to write legacy format for " + material + ": " + e.getMessage());
+                }
             }
+            afterItem.run();
+        }
+
+        try {
+            registry.save();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save model-data.yml, new IDs may change next run: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Frees the IDs of models that were not part of the last generation, new models may reuse them afterwards
+     * @return The number of freed IDs
+     * @throws IOException If model-data.yml could not be written
+     */
+    public int compactIds() throws IOException {
+        registry.load();
+        int freed = registry.compact();
+        if (freed > 0) {
+            registry.save();
+        }
+        return freed;
+    }
+
+    /**
+     * @return The persisted ID registry, loaded at the start of each generation
+     */
+    public ModelDataRegistry getRegistry() {
+        return registry;
+    }
+
+    private void deleteStale(File file) {
+        if (file.exists() && !file.delete()) {
+            plugin.getLogger().warning("Failed to delete " + file.getAbsolutePath());
         }
     }
 
@@ -170,9 +277,81 @@ public class CustomModelDataGenerator {
         return entriesArray;
     }
 
-    private static class ModelEntry {
-        private static final Map<String, ModelEntry> ENTRY_CACHE = new HashMap<>();
-        
+    /**
+     * Entries of one material, looked up by model path and kept sorted by ID for the output
+     */
+    private static final class MaterialEntries implements Comparable<MaterialEntries> {
+        private final String material;
+        // Lower case path -> entry, other spellings are added as aliases once seen
+        private final ConcurrentHashMap<String, ModelEntry> byPath = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListSet<ModelEntry> sorted =
+            new ConcurrentSkipListSet<>(Comparator.comparingInt(ModelEntry::getModelData));
+
+        private MaterialEntries(String material) {
+            this.material = material;
+        }
+
+        private ModelEntry find(String modelPath) {
+            ModelEntry entry = byPath.get(modelPath);
+            if (entry == null) {
+                entry = byPath.get(modelPath.toLowerCase());
+            }
+            return entry;
+        }
+
+        @Override
+        public int compareTo(MaterialEntries other) {
+            return material.compareTo(other.material);
+        }
+    }
+
+    /**
+     * Custom model data -> entry without boxing, IDs are dense from custom-model-data-start
+     * Reads take no lock, writes lock only to grow the table.
+     */
+    private static final class IdIndex {
+        private volatile Table table = new Table(0, 0);
+
+        private ModelEntry get(int id) {
+            Table current = table;
+            int offset = id - current.base;
+            return offset >= 0 && offset < current.slots.length() ? current.slots.get(offset) : null;
+        }
+
+        private synchronized void put(ModelEntry entry) {
+            int id = entry.getModelData();
+            Table current = table;
+            if (current.slots.length() == 0) {
+                current = new Table(id, 16);
+            } else if (id < current.base || id - current.base >= current.slots.length()) {
+                int base = Math.min(id, current.base);
+                int end = Math.max(id + 1, current.base + current.slots.length());
+                Table grown = new Table(base, Math.max(end - base, current.slots.length() * 2));
+                for (int i = 0; i < current.slots.length(); i++) {
+                    grown.slots.set(current.base - base + i, current.slots.get(i));
+                }
+                current = grown;
+            }
+            current.slots.set(id - current.base, entry);
+            table = current;
+        }
+
+        private synchronized void clear() {
+            table = new Table(0, 0);
+        }
+
+        private static final class Table {
+            private final int base;
+            private final AtomicReferenceArray<ModelEntry> slots;
+
+            private Table(int base, int size) {
+                this.base = base;
+                this.slots = new AtomicReferenceArray<>(size);
+            }
+        }
+    }
+
+    private static final class ModelEntry {
         private final int modelData;
         private final String modelPath;
         private final String material;
@@ -183,24 +362,6 @@ public class CustomModelDataGenerator {
             this.material = material;
         }
         
-        public static void clearCache() {
-            ENTRY_CACHE.clear();
-        }
-        
-        public static ModelEntry create(int modelData, String modelPath, String material) {
-            String key = (material + ":" + modelPath).toLowerCase();
-            ModelEntry entry = new ModelEntry(modelData, modelPath, material);
-            ENTRY_CACHE.put(key, entry);
-            return entry;
-        }
-        
-        public static ModelEntry find(String material, String modelPath) {
-            if (material == null || modelPath == null) {
-                return null;
-            }
-            return ENTRY_CACHE.get((material + ":" + modelPath).toLowerCase());
-        }
-        
         public int getModelData() {
             return modelData;
         }
@@ -0,0 +1,134 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.generator;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.HMCCosmeticsPackPlugin;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.config.BuildManifest;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.config.DataManager;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackJson;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes changed display overrides straight into the generated model files, used by '/hmcpack data set ... apply'
+ * Only the display block changes, so the model is not converted again and no other file is touched.
+ */
+public class DisplayPatcher {
+    private static final String FIRSTPERSON_SUFFIX = "_firstperson";
+
+    private final HMCCosmeticsPackPlugin plugin;
+
+    public DisplayPatcher(HMCCosmeticsPackPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Rewrites the display block of a model and of its firstperson twin, each from its own stored overrides
+     * The build manifest is updated as well, so the next incremental generation does not convert the model again.
+     * Must not run while a generation is running.
+     * @param modelName The model name, with or without _firstperson
+     * @return The rewritten files, empty if the model has not been generated yet
+     * @throws IOException If a model file could not be read or written
+     */
+    public List<File> apply(String modelName) throws IOException {
+        return apply(Collections.singletonList(modelName));
+    }
+
+    /**
+     * Same as {@link #apply(String)} for many models, the build manifest is read and written once
+     * @param modelNames The model names, with or without _firstperson
+     * @return The rewritten files of all models
+     * @throws IOException If a model file could not be read or written, files patched before stay patched
+     */
+    public List<File> apply(Collection<String> modelNames) throws IOException {
+        File modelsDir = new File(plugin.getDataFolder(), "output/" + plugin.getConfigManager().getResourcePackId()
+            + "/assets/" + plugin.getConfigManager().getNamespace() + "/models/item");
+        DataManager dataManager = plugin.getDataManager();
+
+        Set<String> baseNames = new LinkedHashSet<>();
+        for (String modelName : modelNames) {
+            String baseName = modelName.toLowerCase();
+            if (baseName.endsWith(FIRSTPERSON_SUFFIX)) {
+                baseName = baseName.substring(0, baseName.length() - FIRSTPERSON_SUFFIX.length());
+            }
+            baseNames.add(baseName);
+        }
+
+        List<File> patched = new ArrayList<>();
+        Set<String> patchedBases = new LinkedHashSet<>();
+        try {
+            for (String baseName : baseNames) {
+                int before = patched.size();
+                for (String name : new String[]{baseName, baseName + FIRSTPERSON_SUFFIX}) {
+                    File modelFile = new File(modelsDir, name + ".json");
+                    DataManager.ModelData modelData = dataManager.getModelData(name);
+                    if (!modelFile.isFile() || modelData.isEmpty()) {
+                        continue;
+                    }
+                    patchDisplay(modelFile.toPath(), modelData.getDisplayJson());
+                    patched.add(modelFile);
+                }
+                // Only recorded once both files are current, a failure in between leaves the model for the next generation
+                if (patched.size() > before) {
+                    patchedBases.add(baseName);
+                }
+            }
+        } finally {
+            if (!patchedBases.isEmpty()) {
+                updateManifest(patchedBases);
+            }
+        }
+        return patched;
+    }
+
+    private void patchDisplay(Path modelFile, JsonObject display) throws IOException {
+        String content = new String(Files.readAllBytes(modelFile), StandardCharsets.UTF_8);
+        JsonElement parsed = JsonParser.parseString(content);
+        if (!parsed.isJsonObject()) {
+            throw new IOException(modelFile.getFileName() + " is not a model JSON");
+        }
+        JsonObject model = parsed.getAsJsonObject();
+        model.add("display", display);
+
+        // Written next to the model and renamed over it, the client or a copy never reads a half-written file
+        Path temp = Files.createTempFile(modelFile.getParent(), modelFile.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                // Keeps the format the last generation wrote, pretty output always has line breaks
+                PackJson.writeModel(model, writer, content.indexOf('\n') < 0);
+            }
+            Files.move(temp, modelFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void updateManifest(Collection<String> baseNames) throws IOException {
+        BuildManifest manifest = new BuildManifest(plugin.getDataFolder());
+        manifest.load();
+        boolean changed = false;
+        for (String baseName : baseNames) {
+            BuildManifest.Entry entry = manifest.get(baseName);
+            if (entry != null) {
+                entry.setOverrides(plugin.getDataManager().getOverridesHash(baseName, entry.getFirstpersonSource() != null));
+                changed = true;
+            }
+        }
+        if (changed) {
+            manifest.save();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.pack;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.GeometryOptimizer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The one JSON serializer for every file that goes into the pack.
+ * Pretty mode writes the same indented output as before. Compact mode writes no whitespace, integral numbers
+ * without ".0", and leaves out model values the client would assume anyway (identity display transforms,
+ * automatic face UVs, default shade and tintindex, the Blockbench-only texture_size).
+ * The generation job selects the mode when it starts, from its settings snapshot, and keeps it until it ends,
+ * so a config reload during a run never mixes both formats in one pack. Both modes are safe to use from
+ * several threads.
+ */
+public final class PackJson {
+    private static final Gson PRETTY = new GsonBuilder().setPrettyPrinting().create();
+
+    // Larger values lose precision as a long, they are written as they are
+    private static final double MAX_INTEGRAL = 1e15;
+
+    private static volatile boolean compact;
+
+    private PackJson() {
+    }
+
+    /**
+     * Selects the output mode for the following writes, called by the generation job before it writes anything
+     * @param compact true to minify, false for indented output
+     */
+    public static void setCompact(boolean compact) {
+        PackJson.compact = compact;
+    }
+
+    public static boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Writes any pack JSON file (item definitions, pack.mcmeta, animation metadata...)
+     */
+    public static void write(JsonElement json, Writer writer) throws IOException {
+        write(json, writer, compact);
+    }
+
+    /**
+     * Same as {@link #write(JsonElement, Writer)} in the given mode instead of the mode of the run
+     */
+    public static void write(JsonElement json, Writer writer, boolean compact) throws IOException {
+        if (!compact) {
+            PRETTY.toJson(json, writer);
+            return;
+        }
+        JsonWriter out = compactWriter(writer);
+        writeValue(out, json);
+        out.flush();
+    }
+
+    /**
+     * Writes a Minecraft model JSON, in compact mode without the values the client fills in by itself
+     * The model tree is not modified
+     */
+    public static void writeModel(JsonObject model, Writer writer) throws IOException {
+        writeModel(model, writer, compact);
+    }
+
+    /**
+     * Same as {@link #writeModel(JsonObject, Writer)} in the given mode instead of the mode of the run
+     */
+    public static void writeModel(JsonObject model, Writer writer, boolean compact) throws IOException {
+        if (!compact) {
+            PRETTY.toJson(model, writer);
+            return;
+        }
+
+        JsonWriter out = compactWriter(writer);
+        // Without a parent there is nothing to inherit, an identity transform is the same as none
+        boolean hasParent = model.has("parent");
+        out.beginObject();
+        for (Map.Entry<String, JsonElement> entry : model.entrySet()) {
+            JsonElement value = entry.getValue();
+            switch (entry.getKey()) {
+                case "texture_size":
+                    break;
+                case "elements":
+                    out.name("elements");
+                    writeElements(out, value);
+                    break;
+                case "display":
+                    JsonObject display = hasParent || !value.isJsonObject() ? null : stripDisplay(value.getAsJsonObject());
+                    if (display == null) {
+                        out.name("display");
+                        writeValue(out, value);
+                    } else if (display.size() > 0) {
+                        out.name("display");
+                        writeValue(out, display);
+                    }
+                    break;
+                default:
+                    out.name(entry.getKey());
+                    writeValue(out, value);
+                    break;
+            }
+        }
+        out.endObject();
+        out.flush();
+    }
+
+    private static JsonWriter compactWriter(Writer writer) {
+        JsonWriter out = new JsonWriter(writer);
+        out.setLenient(true);
+        out.setHtmlSafe(false);
+        return out;
+    }
+
+    private static void writeValue(JsonWriter out, JsonElement value) throws IOException {
+        if (value == null || value.isJsonNull()) {
+            out.nullValue();
+        } else if (value.isJsonPrimitive()) {
+            JsonPrimitive primitive = value.getAsJsonPrimitive();
+            if (primitive.isNumber()) {
+                writeNumber(out, primitive);
+            } else if (primitive.isBoolean()) {
+                out.value(primitive.getAsBoolean());
+            } else {
+                out.value(primitive.getAsString());
+            }
+        } else if (value.isJsonArray()) {
+            out.beginArray();
+            for (JsonElement element : value.getAsJsonArray()) {
+                writeValue(out, element);
+            }
+            out.endArray();
+        } else {
+            out.beginObject();
+            for (Map.Entry<String, JsonElement> entry : value.getAsJsonObject().entrySet()) {
+                out.name(entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+            out.endObject();
+        }
+    }
+
+    private static void writeNumber(JsonWriter out, JsonPrimitive number) throws IOException {
+        double value = number.getAsDouble();
+        if (value == Math.rint(value) && Math.abs(value) < MAX_INTEGRAL) {
+            out.value((long) value);
+        } else {
+            out.value(value);
+        }
+    }
+
+    private static void writeElements(JsonWriter out, JsonElement elements) throws IOException {
+        if (!elements.isJsonArray()) {
+            writeValue(out, elements);
+            return;
+        }
+        out.beginArray();
+        for (JsonElement e : elements.getAsJsonArray()) {
+            if (!e.isJsonObject()) {
+                writeValue(out, e);
+                continue;
+            }
+            JsonObject element = e.getAsJsonObject();
+            double[] from = readVector(element.get("from"));
+            double[] to = readVector(element.get("to"));
+
+            out.beginObject();
+            for (Map.Entry<String, JsonElement> entry : element.entrySet()) {
+                JsonElement value = entry.getValue();
+                switch (entry.getKey()) {
+                    case "shade":
+                        if (isBoolean(value, true)) {
+                            continue;
+                        }
+                        break;
+                    case "rotation":
+                        if (value.isJsonObject() && isNumber(value.getAsJsonObject().get("angle"), 0)
+                                && !value.getAsJsonObject().has("rescale")) {
+                            continue;
+                        }
+                        break;
+                    case "faces":
+                        if (value.isJsonObject()) {
+                            out.name("faces");
+                            writeFaces(out, value.getAsJsonObject(), from, to);
+                            continue;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                out.name(entry.getKey());
+                writeValue(out, value);
+            }
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+    private static void writeFaces(JsonWriter out, JsonObject faces, double[] from, double[] to) throws IOException {
+        out.beginObject();
+        for (Map.Entry<String, JsonElement> faceEntry : faces.entrySet()) {
+            out.name(faceEntry.getKey());
+            if (!faceEntry.getValue().isJsonObject()) {
+                writeValue(out, faceEntry.getValue());
+                continue;
+            }
+            double[] autoUv = from == null || to == null ? null : GeometryOptimizer.autoUv(faceEntry.getKey(), from, to);
+
+            out.beginObject();
+            for (Map.Entry<String, JsonElement> entry : faceEntry.getValue().getAsJsonObject().entrySet()) {
+                JsonElement value = entry.getValue();
+                if (entry.getKey().equals("tintindex") && isNumber(value, -1)) {
+                    continue;
+                }
+                if (entry.getKey().equals("rotation") && isNumber(value, 0)) {
+                    continue;
+                }
+                if (entry.getKey().equals("uv") && autoUv != null && sameValues(readNumbers(value), autoUv)) {
+                    continue;
+                }
+                out.name(entry.getKey());
+                writeValue(out, value);
+            }
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    /**
+     * @return The display object without identity rotation, translation and scale entries
+     */
+    private static JsonObject stripDisplay(JsonObject display) {
+        JsonObject stripped = new JsonObject();
+        for (Map.Entry<String, JsonElement> entry : display.entrySet()) {
+            if (!entry.getValue().isJsonObject()) {
+                stripped.add(entry.getKey(), entry.getValue());
+                continue;
+            }
+            JsonObject transform = new JsonObject();
+            for (Map.Entry<String, JsonElement> part : entry.getValue().getAsJsonObject().entrySet()) {
+                double identity = part.getKey().equals("scale") ? 1 : 0;
+                double[] values = readNumbers(part.getValue());
+                boolean isIdentity = values != null && values.length == 3
+                    && (part.getKey().equals("rotation") || part.getKey().equals("translation") || part.getKey().equals("scale"))
+                    && values[0] == identity && values[1] == identity && values[2] == identity;
+                if (!isIdentity) {
+                    transform.add(part.getKey(), part.getValue());
+                }
+            }
+            if (transform.size() > 0) {
+                stripped.add(entry.getKey(), transform);
+            }
+        }
+        return stripped;
+    }
+
+    private static double[] readVector(JsonElement value) {
+        double[] values = readNumbers(value);
+        return values != null && values.length == 3 ? values : null;
+    }
+
+    private static double[] readNumbers(JsonElement value) {
+        if (value == null || !value.isJsonArray()) {
+            return null;
+        }
+        JsonArray array = value.getAsJsonArray();
+        List<Double> numbers = new ArrayList<>(array.size());
+        for (JsonElement element : array) {
+            if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isNumber()) {
+                return null;
+            }
+            numbers.add(element.getAsDouble());
+        }
+        double[] values = new double[numbers.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = numbers.get(i);
+        }
+        return values;
+    }
+
+    private static boolean sameValues(double[] a, double[] b) {
+        if (a == null || a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNumber(JsonElement value, double expected) {
+        return value != null && value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber() && value.getAsDouble() == expected;
+    }
+
+    private static boolean isBoolean(JsonElement value, boolean expected) {
+        return value != null && value.isJsonPrimitive() && value.getAsJsonPrimitive().isBoolean() && value.getAsBoolean() == expected;
+    }
+}
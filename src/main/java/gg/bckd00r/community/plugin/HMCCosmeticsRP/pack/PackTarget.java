@@ -0,0 +1,55 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.pack;
+
+/**
+ * Which client versions the generated pack is made for, decides the pack.mcmeta format range
+ * and which custom model data item files are written
+ */
+public enum PackTarget {
+    /** 1.21.4+: item definitions in assets/minecraft/items/ */
+    MODERN,
+    /** Before 1.21.4: model overrides in assets/minecraft/models/item/ */
+    LEGACY,
+    /** Both, the overrides are put in an overlay so newer clients never load them */
+    BOTH;
+
+    /** 1.20.5, the oldest format the pack has been made for */
+    public static final int LEGACY_MIN_FORMAT = 32;
+    /** 1.21.4, item definitions replace model overrides from this format on */
+    public static final int ITEMS_MIN_FORMAT = 46;
+    /** 1.21.8, the newest format the output has been checked against */
+    public static final int MAX_FORMAT = 64;
+    /** Overlay directory holding the legacy overrides of a {@link #BOTH} pack */
+    public static final String LEGACY_OVERLAY = "legacy_cmd";
+
+    public boolean writesItemDefinitions() {
+        return this != LEGACY;
+    }
+
+    public boolean writesModelOverrides() {
+        return this != MODERN;
+    }
+
+    public int getMinFormat() {
+        return this == MODERN ? ITEMS_MIN_FORMAT : LEGACY_MIN_FORMAT;
+    }
+
+    public int getMaxFormat() {
+        return this == LEGACY ? ITEMS_MIN_FORMAT - 1 : MAX_FORMAT;
+    }
+
+    /**
+     * @param value The config value, case is ignored
+     * @return The target, or null if the value is not one of modern, legacy or both
+     */
+    public static PackTarget parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        for (PackTarget target : values()) {
+            if (target.name().equalsIgnoreCase(value.trim())) {
+                return target;
+            }
+        }
+        return null;
+    }
+}
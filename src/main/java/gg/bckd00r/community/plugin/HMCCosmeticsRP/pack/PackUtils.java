@@ -1,17 +1,19 @@
 package gg.bckd00r.community.plugin.HMCCosmeticsRP.pack;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import gg.bckd00r.community.plugin.HMCCosmeticsRP.HMCCosmeticsPackPlugin;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 public class PackUtils {
 
@@ -25,16 +27,34 @@ public class PackUtils {
             JsonObject description = new JsonObject();
             description.addProperty("text", "&dHMCCosmetics ResourcePack &8@bckd00r &6(" + formattedDate + ")");
 
+            PackTarget target = HMCCosmeticsPackPlugin.getInstance().getConfigManager().getPackTarget();
             pack.add("description", description);
-            pack.addProperty("pack_format", 32);
+            pack.addProperty("pack_format", target.getMinFormat());
 
             JsonObject supportedFormats = new JsonObject();
-            supportedFormats.addProperty("min_inclusive", 32);
-            supportedFormats.addProperty("max_inclusive", 46);
+            supportedFormats.addProperty("min_inclusive", target.getMinFormat());
+            supportedFormats.addProperty("max_inclusive", target.getMaxFormat());
             pack.add("supported_formats", supportedFormats);
 
             packMeta.add("pack", pack);
 
+            // The legacy overrides of a pack made for both are only loaded by clients before item definitions
+            if (target == PackTarget.BOTH && HMCCosmeticsPackPlugin.getInstance().getConfigManager().useCustomModelData()) {
+                JsonObject overlayFormats = new JsonObject();
+                overlayFormats.addProperty("min_inclusive", PackTarget.LEGACY_MIN_FORMAT);
+                overlayFormats.addProperty("max_inclusive", PackTarget.ITEMS_MIN_FORMAT - 1);
+
+                JsonObject legacyOverlay = new JsonObject();
+                legacyOverlay.add("formats", overlayFormats);
+                legacyOverlay.addProperty("directory", PackTarget.LEGACY_OVERLAY);
+
+                JsonArray overlayEntries = new JsonArray();
+                overlayEntries.add(legacyOverlay);
+                JsonObject overlays = new JsonObject();
+                overlays.add("entries", overlayEntries);
+                packMeta.add("overlays", overlays);
+            }
+
             File outputDir = new File(HMCCosmeticsPackPlugin.getInstance().getDataFolder(), "output/" + HMCCosmeticsPackPlugin.getInstance().getConfigManager().getResourcePackId());
             File packMetaFile = new File(outputDir, "pack.mcmeta");
 
@@ -42,8 +62,7 @@ public class PackUtils {
                 outputDir.mkdirs();
             }
             try (FileWriter writer = new FileWriter(packMetaFile, StandardCharsets.UTF_8)) {
-                Gson gson = new GsonBuilder().setPrettyPrinting().create();
-                gson.toJson(packMeta, writer);
+                PackJson.write(packMeta, writer);
             }
 
             copyPackIcon(outputDir);
@@ -71,6 +90,14 @@ public class PackUtils {
      * Copies the generated resource pack to a custom external path if specified in the config
      */
     public static void copyResourcePackToExternalPath() {
+        copyResourcePackToExternalPath(() -> { });
+    }
+
+    /**
+     * Same as {@link #copyResourcePackToExternalPath()}
+     * @param afterFile Run after every deleted or copied file, the generation job yields to the server there
+     */
+    public static void copyResourcePackToExternalPath(Runnable afterFile) {
         HMCCosmeticsPackPlugin plugin = HMCCosmeticsPackPlugin.getInstance();
         String copyToPath = plugin.getConfigManager().getCopyToPath();
         if (copyToPath == null || copyToPath.trim().isEmpty()) {
@@ -90,13 +117,42 @@ public class PackUtils {
             }
             
             if (targetDir.exists()) {
-                gg.bckd00r.community.plugin.HMCCosmeticsRP.util.FileUtils.deleteDirectory(targetDir);
+                gg.bckd00r.community.plugin.HMCCosmeticsRP.util.FileUtils.deleteDirectory(targetDir, afterFile);
             }
             
-            gg.bckd00r.community.plugin.HMCCosmeticsRP.util.FileUtils.copyDirectory(sourceDir, targetDir);
+            gg.bckd00r.community.plugin.HMCCosmeticsRP.util.FileUtils.copyDirectory(sourceDir, targetDir, afterFile);
             
         } catch (Exception e) {
         }
     }
 
+    /**
+     * Copies single changed files of the generated pack to the external path, instead of the whole pack
+     * @param files Files inside the local output directory
+     * @return The number of copied files, 0 if no external path is configured
+     */
+    public static int copyFilesToExternalPath(List<File> files) throws IOException {
+        HMCCosmeticsPackPlugin plugin = HMCCosmeticsPackPlugin.getInstance();
+        String copyToPath = plugin.getConfigManager().getCopyToPath();
+        if (copyToPath == null || copyToPath.trim().isEmpty()) {
+            return 0;
+        }
+
+        Path sourceDir = new File(plugin.getDataFolder(), "output/" + plugin.getConfigManager().getResourcePackId()).toPath();
+        Path targetDir = new File(copyToPath, plugin.getConfigManager().getResourcePackId()).toPath();
+        if (!Files.isDirectory(targetDir)) {
+            // Never published yet, the next generation copies the whole pack
+            return 0;
+        }
+
+        int copied = 0;
+        for (File file : files) {
+            Path target = targetDir.resolve(sourceDir.relativize(file.toPath()));
+            Files.createDirectories(target.getParent());
+            Files.copy(file.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+            copied++;
+        }
+        return copied;
+    }
+
 }
@@ -0,0 +1,489 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.pack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Lossless PNG re-encoder for generated textures.
+ * Drops every ancillary chunk, reduces to a palette or grayscale when that keeps every pixel identical,
+ * and keeps the smallest of a few filter and deflate strategy combinations.
+ * Only 8 bit and lower, non-interlaced images are re-encoded (Blockbench always writes those),
+ * anything else is returned unchanged.
+ */
+public final class PngOptimizer {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    // Larger textures are left alone, decoding them would need too much heap
+    private static final long MAX_PIXELS = 4096L * 4096L;
+
+    private static final int COLOR_GRAY = 0;
+    private static final int COLOR_RGB = 2;
+    private static final int COLOR_PALETTE = 3;
+    private static final int COLOR_GRAY_ALPHA = 4;
+    private static final int COLOR_RGBA = 6;
+
+    private PngOptimizer() {
+    }
+
+    /**
+     * Re-encodes a PNG losslessly
+     * @param png The original PNG bytes
+     * @return The smaller encoding, or the original bytes if it could not be improved or read
+     */
+    public static byte[] optimize(byte[] png) {
+        try {
+            int[] size = new int[2];
+            int[] argb = decode(png, size);
+            if (argb == null) {
+                return png;
+            }
+            byte[] optimized = encode(argb, size[0], size[1]);
+            return optimized.length < png.length ? optimized : png;
+        } catch (IOException | DataFormatException | RuntimeException e) {
+            // Unreadable or unusual file, keep it as it is
+            return png;
+        }
+    }
+
+    // ---- Decoding ----
+
+    /**
+     * Decodes a non-interlaced PNG with a bit depth of 8 or less into ARGB pixels
+     * @param size Receives width and height
+     * @return The pixels, or null if the image is not supported
+     */
+    public static int[] decode(byte[] png, int[] size) throws IOException, DataFormatException {
+        if (png.length < SIGNATURE.length || !Arrays.equals(Arrays.copyOf(png, SIGNATURE.length), SIGNATURE)) {
+            return null;
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(png);
+        in.position(SIGNATURE.length);
+        int width = 0, height = 0, bitDepth = 0, colorType = -1;
+        byte[] palette = null;
+        byte[] transparency = null;
+        ByteArrayOutputStream idat = new ByteArrayOutputStream();
+
+        while (in.remaining() >= 12) {
+            int length = in.getInt();
+            byte[] typeBytes = new byte[4];
+            in.get(typeBytes);
+            String type = new String(typeBytes, StandardCharsets.US_ASCII);
+            if (length < 0 || length > in.remaining() - 4) {
+                return null;
+            }
+            byte[] data = new byte[length];
+            in.get(data);
+            in.getInt(); // CRC
+
+            switch (type) {
+                case "IHDR":
+                    ByteBuffer header = ByteBuffer.wrap(data);
+                    width = header.getInt();
+                    height = header.getInt();
+                    bitDepth = header.get() & 0xFF;
+                    colorType = header.get() & 0xFF;
+                    header.get(); // compression
+                    header.get(); // filter
+                    if ((header.get() & 0xFF) != 0) {
+                        return null; // interlaced
+                    }
+                    break;
+                case "PLTE":
+                    palette = data;
+                    break;
+                case "tRNS":
+                    transparency = data;
+                    break;
+                case "IDAT":
+                    idat.write(data);
+                    break;
+                case "IEND":
+                    in.position(in.limit());
+                    break;
+                default:
+                    // Ancillary chunks (text, time, gamma, color profiles...) are dropped
+                    break;
+            }
+        }
+
+        if (width <= 0 || height <= 0 || bitDepth > 8 || (long) width * height > MAX_PIXELS) {
+            return null;
+        }
+
+        int channels;
+        switch (colorType) {
+            case COLOR_GRAY: channels = 1; break;
+            case COLOR_RGB: channels = 3; break;
+            case COLOR_PALETTE: channels = 1; break;
+            case COLOR_GRAY_ALPHA: channels = 2; break;
+            case COLOR_RGBA: channels = 4; break;
+            default: return null;
+        }
+        if (colorType == COLOR_PALETTE && palette == null) {
+            return null;
+        }
+
+        int bitsPerPixel = channels * bitDepth;
+        int bytesPerPixel = Math.max(1, bitsPerPixel / 8);
+        int stride = (width * bitsPerPixel + 7) / 8;
+        byte[] raw = inflate(idat.toByteArray(), (stride + 1) * height);
+        if (raw == null) {
+            return null;
+        }
+
+        int[] argb = new int[width * height];
+        byte[] previous = new byte[stride];
+        byte[] row = new byte[stride];
+        int maxSample = (1 << bitDepth) - 1;
+
+        for (int y = 0; y < height; y++) {
+            int filter = raw[y * (stride + 1)] & 0xFF;
+            System.arraycopy(raw, y * (stride + 1) + 1, row, 0, stride);
+            unfilter(filter, row, previous, bytesPerPixel);
+
+            for (int x = 0; x < width; x++) {
+                int a = 255, r, g, b;
+                switch (colorType) {
+                    case COLOR_GRAY: {
+                        int sample = readSample(row, x, bitDepth);
+                        if (transparency != null && transparency.length >= 2
+                                && sample == (((transparency[0] & 0xFF) << 8) | (transparency[1] & 0xFF))) {
+                            a = 0;
+                        }
+                        r = g = b = sample * 255 / maxSample;
+                        break;
+                    }
+                    case COLOR_RGB:
+                        r = row[x * 3] & 0xFF;
+                        g = row[x * 3 + 1] & 0xFF;
+                        b = row[x * 3 + 2] & 0xFF;
+                        if (transparency != null && transparency.length >= 6
+                                && r == (transparency[1] & 0xFF) && g == (transparency[3] & 0xFF) && b == (transparency[5] & 0xFF)) {
+                            a = 0;
+                        }
+                        break;
+                    case COLOR_PALETTE: {
+                        int index = readSample(row, x, bitDepth);
+                        if (index * 3 + 2 >= palette.length) {
+                            return null;
+                        }
+                        r = palette[index * 3] & 0xFF;
+                        g = palette[index * 3 + 1] & 0xFF;
+                        b = palette[index * 3 + 2] & 0xFF;
+                        if (transparency != null && index < transparency.length) {
+                            a = transparency[index] & 0xFF;
+                        }
+                        break;
+                    }
+                    case COLOR_GRAY_ALPHA:
+                        r = g = b = row[x * 2] & 0xFF;
+                        a = row[x * 2 + 1] & 0xFF;
+                        break;
+                    default:
+                        r = row[x * 4] & 0xFF;
+                        g = row[x * 4 + 1] & 0xFF;
+                        b = row[x * 4 + 2] & 0xFF;
+                        a = row[x * 4 + 3] & 0xFF;
+                        break;
+                }
+                argb[y * width + x] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+
+            byte[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+
+        size[0] = width;
+        size[1] = height;
+        return argb;
+    }
+
+    private static byte[] inflate(byte[] compressed, int expected) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] out = new byte[expected];
+            int total = 0;
+            while (total < expected && !inflater.finished()) {
+                int n = inflater.inflate(out, total, expected - total);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return null;
+                }
+                total += n;
+            }
+            return total == expected ? out : null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int readSample(byte[] row, int x, int bitDepth) {
+        if (bitDepth == 8) {
+            return row[x] & 0xFF;
+        }
+        int bitOffset = x * bitDepth;
+        int value = row[bitOffset / 8] & 0xFF;
+        int shift = 8 - bitDepth - (bitOffset % 8);
+        return (value >> shift) & ((1 << bitDepth) - 1);
+    }
+
+    private static void unfilter(int filter, byte[] row, byte[] previous, int bpp) throws DataFormatException {
+        for (int i = 0; i < row.length; i++) {
+            int left = i >= bpp ? row[i - bpp] & 0xFF : 0;
+            int up = previous[i] & 0xFF;
+            int upLeft = i >= bpp ? previous[i - bpp] & 0xFF : 0;
+            int value = row[i] & 0xFF;
+            switch (filter) {
+                case 0: break;
+                case 1: value += left; break;
+                case 2: value += up; break;
+                case 3: value += (left + up) >>> 1; break;
+                case 4: value += paeth(left, up, upLeft); break;
+                default: throw new DataFormatException("Unknown PNG filter " + filter);
+            }
+            row[i] = (byte) value;
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    // ---- Encoding ----
+
+    /**
+     * Encodes the pixels in the smallest lossless color type found
+     * @param argb The pixels, row by row
+     */
+    public static byte[] encode(int[] argb, int width, int height) throws IOException {
+        boolean opaque = true;
+        boolean gray = true;
+        Map<Integer, Integer> colors = new LinkedHashMap<>();
+        for (int pixel : argb) {
+            int a = pixel >>> 24, r = (pixel >> 16) & 0xFF, g = (pixel >> 8) & 0xFF, b = pixel & 0xFF;
+            opaque &= a == 255;
+            gray &= r == g && g == b;
+            if (colors.size() <= 256) {
+                colors.putIfAbsent(pixel, 0);
+            }
+        }
+
+        byte[] best = null;
+        if (colors.size() <= 256) {
+            best = smallest(best, encodePalette(argb, width, height, colors));
+        }
+        if (gray) {
+            best = smallest(best, encodeRaw(argb, width, height, opaque ? COLOR_GRAY : COLOR_GRAY_ALPHA));
+        } else if (colors.size() > 16 || best == null) {
+            // A truecolor encoding rarely beats a small palette, skip the extra work
+            best = smallest(best, encodeRaw(argb, width, height, opaque ? COLOR_RGB : COLOR_RGBA));
+        }
+        return best;
+    }
+
+    private static byte[] smallest(byte[] current, byte[] candidate) {
+        return current == null || candidate.length < current.length ? candidate : current;
+    }
+
+    private static byte[] encodePalette(int[] argb, int width, int height, Map<Integer, Integer> colors) throws IOException {
+        // Translucent entries first, so tRNS can stop at the last one of them
+        Integer[] entries = colors.keySet().toArray(new Integer[0]);
+        Arrays.sort(entries, (c1, c2) -> Boolean.compare((c1 >>> 24) == 255, (c2 >>> 24) == 255));
+        int translucent = 0;
+        byte[] plte = new byte[entries.length * 3];
+        for (int i = 0; i < entries.length; i++) {
+            int color = entries[i];
+            colors.put(color, i);
+            plte[i * 3] = (byte) (color >> 16);
+            plte[i * 3 + 1] = (byte) (color >> 8);
+            plte[i * 3 + 2] = (byte) color;
+            if ((color >>> 24) != 255) {
+                translucent = i + 1;
+            }
+        }
+        byte[] trns = new byte[translucent];
+        for (int i = 0; i < translucent; i++) {
+            trns[i] = (byte) (entries[i] >>> 24);
+        }
+
+        int bitDepth = entries.length <= 2 ? 1 : entries.length <= 4 ? 2 : entries.length <= 16 ? 4 : 8;
+        int stride = (width * bitDepth + 7) / 8;
+        byte[][] rows = new byte[height][stride];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = colors.get(argb[y * width + x]);
+                int bitOffset = x * bitDepth;
+                rows[y][bitOffset / 8] |= (byte) (index << (8 - bitDepth - bitOffset % 8));
+            }
+        }
+        return writePng(width, height, bitDepth, COLOR_PALETTE, plte, trns, rows, 1);
+    }
+
+    private static byte[] encodeRaw(int[] argb, int width, int height, int colorType) throws IOException {
+        int channels = colorType == COLOR_GRAY ? 1 : colorType == COLOR_GRAY_ALPHA ? 2 : colorType == COLOR_RGB ? 3 : 4;
+        byte[][] rows = new byte[height][width * channels];
+        for (int y = 0; y < height; y++) {
+            byte[] row = rows[y];
+            for (int x = 0; x < width; x++) {
+                int pixel = argb[y * width + x];
+                int o = x * channels;
+                switch (colorType) {
+                    case COLOR_GRAY:
+                        row[o] = (byte) pixel;
+                        break;
+                    case COLOR_GRAY_ALPHA:
+                        row[o] = (byte) pixel;
+                        row[o + 1] = (byte) (pixel >>> 24);
+                        break;
+                    case COLOR_RGB:
+                        row[o] = (byte) (pixel >> 16);
+                        row[o + 1] = (byte) (pixel >> 8);
+                        row[o + 2] = (byte) pixel;
+                        break;
+                    default:
+                        row[o] = (byte) (pixel >> 16);
+                        row[o + 1] = (byte) (pixel >> 8);
+                        row[o + 2] = (byte) pixel;
+                        row[o + 3] = (byte) (pixel >>> 24);
+                        break;
+                }
+            }
+        }
+        return writePng(width, height, 8, colorType, null, null, rows, channels);
+    }
+
+    /**
+     * Writes the image with the best of: no filter or per-row adaptive filtering, default or filtered deflate
+     */
+    private static byte[] writePng(int width, int height, int bitDepth, int colorType, byte[] plte, byte[] trns,
+                                   byte[][] rows, int bytesPerPixel) throws IOException {
+        byte[] best = null;
+        for (boolean adaptive : new boolean[]{false, true}) {
+            byte[] filtered = filterRows(rows, bytesPerPixel, adaptive);
+            for (int strategy : new int[]{Deflater.DEFAULT_STRATEGY, Deflater.FILTERED}) {
+                byte[] idat = deflate(filtered, strategy);
+                if (best == null || idat.length < best.length) {
+                    best = idat;
+                }
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(best.length + 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(SIGNATURE);
+
+        ByteBuffer ihdr = ByteBuffer.allocate(13);
+        ihdr.putInt(width).putInt(height).put((byte) bitDepth).put((byte) colorType).put((byte) 0).put((byte) 0).put((byte) 0);
+        writeChunk(out, "IHDR", ihdr.array());
+        if (plte != null) {
+            writeChunk(out, "PLTE", plte);
+        }
+        if (trns != null && trns.length > 0) {
+            writeChunk(out, "tRNS", trns);
+        }
+        writeChunk(out, "IDAT", best);
+        writeChunk(out, "IEND", new byte[0]);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] filterRows(byte[][] rows, int bpp, boolean adaptive) {
+        int stride = rows.length == 0 ? 0 : rows[0].length;
+        byte[] out = new byte[rows.length * (stride + 1)];
+        byte[] empty = new byte[stride];
+        byte[] candidate = new byte[stride];
+
+        for (int y = 0; y < rows.length; y++) {
+            byte[] row = rows[y];
+            byte[] previous = y > 0 ? rows[y - 1] : empty;
+            int offset = y * (stride + 1);
+
+            int bestFilter = 0;
+            if (adaptive) {
+                // Minimum sum of absolute differences, the usual heuristic for picking a row filter
+                long bestScore = Long.MAX_VALUE;
+                for (int filter = 0; filter <= 4; filter++) {
+                    applyFilter(filter, row, previous, bpp, candidate);
+                    long score = 0;
+                    for (byte value : candidate) {
+                        score += Math.abs((int) value);
+                    }
+                    if (score < bestScore) {
+                        bestScore = score;
+                        bestFilter = filter;
+                    }
+                }
+            }
+
+            out[offset] = (byte) bestFilter;
+            applyFilter(bestFilter, row, previous, bpp, candidate);
+            System.arraycopy(candidate, 0, out, offset + 1, stride);
+        }
+        return out;
+    }
+
+    private static void applyFilter(int filter, byte[] row, byte[] previous, int bpp, byte[] out) {
+        for (int i = 0; i < row.length; i++) {
+            int value = row[i] & 0xFF;
+            int left = i >= bpp ? row[i - bpp] & 0xFF : 0;
+            int up = previous[i] & 0xFF;
+            int upLeft = i >= bpp ? previous[i - bpp] & 0xFF : 0;
+            switch (filter) {
+                case 1: value -= left; break;
+                case 2: value -= up; break;
+                case 3: value -= (left + up) >>> 1; break;
+                case 4: value -= paeth(left, up, upLeft); break;
+                default: break;
+            }
+            out[i] = (byte) value;
+        }
+    }
+
+    private static byte[] deflate(byte[] data, int strategy) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setStrategy(strategy);
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            byte[] buffer = new byte[16 * 1024];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,936 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.task;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.HMCCosmeticsPackPlugin;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.config.BuildManifest;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.config.ConfigManager;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.BBModelToJsonConvert;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.ConversionOptions;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.ConvertedModel;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.GeometryOptimizer;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.java.TextureAtlas;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.converter.worker.ConversionWorkerClient;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.generator.CosmeticYMLGenerator;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackJson;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.pack.PackUtils;
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.util.FileUtils;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * A single run of the generation pipeline.
+ * Runs on the generation executor; everything that touches the senders is handed back to the main thread.
+ */
+public class GenerationJob implements Runnable {
+    // Supported cosmetic types
+    private static final List<String> SUPPORTED_COSMETIC_TYPES = Arrays.asList(
+        "HELMET", "BACKPACK", "CHESTPLATE", "LEGGINGS", "BOOTS", "OFFHAND", "BALLOON"
+    );
+
+    // Bump when the converter output changes, so models from an older run are converted again
+    private static final int CONVERTER_VERSION = 2;
+
+    // Generated file locations below assets/<namespace>, swept for files no model owns anymore
+    private static final List<String> OUTPUT_DIRECTORIES = Arrays.asList("models/item", "textures/item", "items");
+
+    private final HMCCosmeticsPackPlugin plugin;
+    private final ConfigManager configManager;
+    private final List<CommandSender> senders;
+    private final Plugin hmcPlugin;
+    private final boolean fullRebuild;
+    private final ConversionOptions conversionOptions;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    // Set in tick-budget mode, the job then runs in slices of the server tick instead of next to it
+    private final TickBudget tickBudget;
+
+    /**
+     * @param plugin The plugin instance
+     * @param senders Everyone whose request this run covers, they all receive the progress messages
+     * @param hmcPlugin The HMCCosmetics plugin, resolved on the main thread (may be null)
+     * @param fullRebuild true to ignore the build manifest and convert every model
+     */
+    public GenerationJob(HMCCosmeticsPackPlugin plugin, Collection<CommandSender> senders, Plugin hmcPlugin, boolean fullRebuild) {
+        this.plugin = plugin;
+        this.configManager = plugin.getConfigManager();
+        this.senders = new ArrayList<>(senders);
+        this.hmcPlugin = hmcPlugin;
+        this.fullRebuild = fullRebuild;
+        this.conversionOptions = createConversionOptions();
+        this.tickBudget = configManager.getTickBudgetMillis() > 0 ? new TickBudget(plugin, configManager.getTickBudgetMillis()) : null;
+    }
+
+    /**
+     * Snapshot of the converter settings, taken on the main thread so a reload during the run has no effect
+     */
+    private ConversionOptions createConversionOptions() {
+        ConversionOptions options = new ConversionOptions();
+        options.setOptimizeTextures(configManager.isOptimizeTextures());
+        options.setTextureCacheDir(new File(plugin.getDataFolder(), "cache/textures").toPath());
+        options.setOptimizeGeometry(configManager.isOptimizeGeometry());
+        options.setCompactJson(configManager.isCompactJson());
+        options.setTextureAtlas(configManager.isTextureAtlas());
+        options.setAtlasMaxTextureSize(configManager.getAtlasMaxTextureSize());
+        options.setAtlasSheetSize(configManager.getAtlasSheetSize());
+        return options;
+    }
+
+    /**
+     * Requests cancellation, the job stops at the next model boundary
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Lets a tick-budget job run to its end without waiting for server ticks, for when the server stops ticking
+     */
+    public void releaseTickBudget() {
+        if (tickBudget != null) {
+            tickBudget.close();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public List<CommandSender> getSenders() {
+        return Collections.unmodifiableList(senders);
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (tickBudget != null) {
+                tickBudget.begin();
+            }
+            // Fixed for the whole run, a reload only takes effect with the next generation
+            PackJson.setCompact(conversionOptions.isCompactJson());
+            generate();
+        } catch (CancellationException e) {
+            message(ChatColor.RED + "Generation cancelled. Output may be incomplete, run '/hmcpack generate' again.");
+        } catch (Exception e) {
+            message(ChatColor.RED + "Generation failed: " + e.getMessage());
+            plugin.getLogger().severe("Generation failed: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (tickBudget != null) {
+                tickBudget.finish();
+            }
+        }
+    }
+
+    private void generate() {
+        // Get input directory
+        File inputDir = new File(plugin.getDataFolder(), "input");
+        if (!inputDir.exists() || !inputDir.isDirectory()) {
+            inputDir.mkdirs();
+            message(ChatColor.YELLOW + "Input directory not found, created one at: " + inputDir.getAbsolutePath());
+            message(ChatColor.YELLOW + "Please place your .bbmodel files in the input directory.");
+            return;
+        }
+
+        // Process all .bbmodel files
+        File[] bbmodelFiles = inputDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".bbmodel"));
+        if (bbmodelFiles == null || bbmodelFiles.length == 0) {
+            message(ChatColor.YELLOW + "No .bbmodel files found in the input directory.");
+            return;
+        }
+
+        // Separate main models from firstperson models
+        Map<String, File> mainModels = new TreeMap<>();
+        Map<String, File> firstpersonModels = new HashMap<>();
+        int skippedCount = 0;
+
+        for (File file : bbmodelFiles) {
+            String fileName = file.getName().replace(".bbmodel", "");
+
+            // Validate if this is a supported cosmetic model
+            if (!isValidCosmeticModel(fileName)) {
+                message(ChatColor.RED + "Skipped " + file.getName() + " - no valid cosmetic type found (supported: " +
+                    String.join(", ", SUPPORTED_COSMETIC_TYPES.stream().map(String::toLowerCase).collect(Collectors.toList())) + ")");
+                skippedCount++;
+                continue;
+            }
+
+            if (fileName.endsWith("_firstperson")) {
+                String baseName = fileName.replace("_firstperson", "");
+                firstpersonModels.put(baseName, file);
+                debug(ChatColor.AQUA + "Found firstperson model: " + fileName + " for " + baseName);
+            } else {
+                mainModels.put(fileName, file);
+            }
+        }
+
+        if (skippedCount > 0) {
+            message(ChatColor.YELLOW + "Skipped " + skippedCount + " invalid model file(s).");
+        }
+
+        if (mainModels.isEmpty()) {
+            message(ChatColor.RED + "No valid cosmetic models found to process!");
+            return;
+        }
+
+        // Incremental runs keep the previous output and only convert models whose fingerprint changed
+        boolean incremental = configManager.isIncrementalGeneration() && !fullRebuild;
+        BuildManifest previousManifest = new BuildManifest(plugin.getDataFolder());
+        if (incremental) {
+            previousManifest.load();
+        }
+
+        message(ChatColor.GOLD + (incremental ? "=== Starting Incremental Generation Process ===" : "=== Starting Clean Generation Process ==="));
+        message(ChatColor.YELLOW + "Step 1: Cleaning old files...");
+
+        // Reset custom model data generator to clear any previous state
+        if (configManager.useCustomModelData()) {
+            plugin.getModelDataGenerator().reset();
+        }
+
+        String packId = configManager.getResourcePackId();
+        File localOutputDir = new File(plugin.getDataFolder(), "output/" + packId);
+
+        // Clean up old files before generation
+        cleanupOldFiles(localOutputDir, !incremental);
+
+        message(ChatColor.YELLOW + "Step 2: Generating files locally...");
+
+        // Create LOCAL output directories first
+        String localModelsPath = localOutputDir.getAbsolutePath() + "/assets/" + configManager.getNamespace() + "/models/item/";
+        String localTexturesPath = localOutputDir.getAbsolutePath() + "/assets/" + configManager.getNamespace() + "/textures/item/";
+        String localItemsPath = localOutputDir.getAbsolutePath() + "/assets/" + configManager.getNamespace() + "/items/";
+
+        try {
+            Files.createDirectories(Paths.get(localModelsPath));
+            Files.createDirectories(Paths.get(localTexturesPath));
+            Files.createDirectories(Paths.get(localItemsPath));
+            message(ChatColor.GREEN + "✓ Created output directories");
+        } catch (IOException e) {
+            message(ChatColor.RED + "Failed to create output directories: " + e.getMessage());
+            return;
+        }
+
+        // Initialize YML generator
+        CosmeticYMLGenerator ymlGenerator = new CosmeticYMLGenerator(plugin, configManager.getNamespace(), hmcPlugin);
+
+        // Counters for different types
+        int helmetCount = 0;
+        int backpackCount = 0;
+        int chestplateCount = 0;
+        int leggingsCount = 0;
+        int bootsCount = 0;
+        int offhandCount = 0;
+        int balloonCount = 0;
+        int otherCount = 0;
+
+        // Map to track processed files by type
+        Map<String, Integer> processedCounts = new HashMap<>();
+
+        int successCount = 0;
+
+        // Fingerprint every model, unchanged ones are reused from the previous output
+        File namespaceDir = new File(localOutputDir, "assets/" + configManager.getNamespace());
+        List<ConversionResult> results = fingerprintModels(mainModels, firstpersonModels, previousManifest, namespaceDir, incremental);
+        BuildManifest manifest = new BuildManifest(plugin.getDataFolder());
+
+        // Stage 1: convert every changed model together with its firstperson variant in parallel
+        // With the worker process this happens in a child JVM, in tick-budget mode one model at a time on a single
+        // thread next to the server, the job only waits for it within its slices
+        ConversionWorkerClient worker = configManager.isWorkerProcess()
+            ? new ConversionWorkerClient(plugin.getLogger(), configManager.getWorkerHeapMb(), configManager.getGenerationThreads(),
+                new File(plugin.getDataFolder(), "cache/worker").toPath())
+            : null;
+        ForkJoinPool pool = worker == null
+            ? new ForkJoinPool(tickBudget == null ? configManager.getGenerationThreads() : 1)
+            : null;
+        try {
+            if (worker != null) {
+                submitToWorker(worker, results, localTexturesPath);
+            } else {
+                submitConversions(pool, results, localTexturesPath);
+            }
+
+            // Optional atlas stage: needs every converted model before the first one is written
+            if (conversionOptions.isTextureAtlas()) {
+                packAtlas(results, localTexturesPath);
+            }
+
+            // Stage 2: merge the results one at a time in model name order, so the output matches a serial run
+            for (ConversionResult result : results) {
+                checkCancelled();
+                awaitConversion(result);
+
+                String modelName = result.modelName;
+                File bbmodelFile = result.bbmodelFile;
+                File firstpersonFile = result.firstpersonFile;
+
+                if (result.error != null) {
+                    message(ChatColor.RED + "Error processing " + bbmodelFile.getName() + ": " + result.error.getMessage());
+                    continue;
+                }
+
+                try {
+                    String type;
+                    if (result.reused != null) {
+                        // Unchanged since the last run, only the cosmetic entry is rebuilt
+                        type = ymlGenerator.addReusedModel(modelName, firstpersonFile != null, result.reused.isPaintable());
+                        result.fingerprint.setPaintable(result.reused.isPaintable());
+                        result.fingerprint.getOutputs().addAll(result.reused.getOutputs());
+                    } else {
+                        // Generate YML data and get the type, the model JSON is written exactly once here
+                        File jsonFile = new File(localModelsPath + modelName + ".json");
+                        type = ymlGenerator.generateYMLFiles(modelName, result.model, jsonFile, firstpersonFile != null);
+                        result.fingerprint.setPaintable(ymlGenerator.isModelPaintable(result.model));
+                        collectOutputs(namespaceDir, modelName, result.model.getJson(), result.fingerprint.getOutputs());
+                        reportGeometry(modelName, result.model);
+                    }
+
+                    // Check if type is null (file was skipped)
+                    if (type == null) {
+                        plugin.getLogger().warning("Skipped processing " + modelName + " - no valid cosmetic type found");
+                        continue;
+                    }
+
+                    // Process firstperson model separately if it exists
+                    if (result.firstpersonModel != null) {
+                        try {
+                            // Process firstperson model like any other model
+                            plugin.getLogger().info("Processing firstperson model: " + modelName + "_firstperson");
+                            File firstpersonJsonFile = new File(localModelsPath + modelName + "_firstperson.json");
+                            ymlGenerator.processFirstpersonModel(modelName + "_firstperson", result.firstpersonModel, firstpersonJsonFile);
+                            collectOutputs(namespaceDir, modelName + "_firstperson", result.firstpersonModel.getJson(), result.fingerprint.getOutputs());
+                            reportGeometry(modelName + "_firstperson", result.firstpersonModel);
+                            plugin.getLogger().info("Successfully processed firstperson model: " + modelName + "_firstperson");
+                        } catch (Exception e) {
+                            plugin.getLogger().warning("Failed to process firstperson model for " + modelName + ": " + e.getMessage());
+                            e.printStackTrace();
+                        }
+                    }
+
+                    // Display data of new models is created while merging, so the stored fingerprint is taken afterwards
+                    result.fingerprint.setOverrides(overrideFingerprint(modelName, firstpersonFile != null));
+                    manifest.put(modelName, result.fingerprint);
+
+                    // Count the type
+                    processedCounts.merge(type.toLowerCase(), 1, Integer::sum);
+
+                    switch (type.toUpperCase()) {
+                        case "HELMET":
+                            helmetCount++;
+                            break;
+                        case "BACKPACK":
+                            backpackCount++;
+                            break;
+                        case "CHESTPLATE":
+                            chestplateCount++;
+                            break;
+                        case "LEGGINGS":
+                            leggingsCount++;
+                            break;
+                        case "BOOTS":
+                            bootsCount++;
+                            break;
+                        case "OFFHAND":
+                            offhandCount++;
+                            break;
+                        case "BALLOON":
+                            balloonCount++;
+                            break;
+                        default:
+                            otherCount++;
+                            break;
+                    }
+                } catch (Exception e) {
+                    message(ChatColor.RED + "Error processing " + bbmodelFile.getName() + ": " + e.getMessage());
+                    plugin.getLogger().severe("Error processing " + bbmodelFile.getName() + ": " + e.getMessage());
+                    continue;
+                } finally {
+                    // Merged models are on disk now, let the JSON trees go
+                    result.model = null;
+                    result.firstpersonModel = null;
+                }
+
+                successCount++;
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            if (worker != null) {
+                worker.close();
+            }
+        }
+
+        checkCancelled();
+
+        debug(ChatColor.GREEN + "✓ Step 2 Complete: All models converted");
+        message(ChatColor.YELLOW + "Step 3: Writing cosmetic, menu and pack files...");
+
+        // Files of removed or renamed models were not deleted up front in incremental mode,
+        // and textures moved into atlas sheets are left behind in either mode
+        if (incremental || conversionOptions.isTextureAtlas()) {
+            sweepStaleOutputs(namespaceDir, manifest);
+        }
+
+        // Commit phase: type files, menus, transfers and pack.mcmeta are written once per run
+        // From here on the job only yields, a cancel would leave the output half written
+        ymlGenerator.commit(this::yieldToServer);
+        // Display data of new models was collected in memory, write data.yml once for the whole run
+        plugin.getDataManager().flush();
+
+        try {
+            manifest.save();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save build manifest, the next run will convert every model: " + e.getMessage());
+        }
+
+        // Generate custom model data files if enabled
+        if (configManager.useCustomModelData()) {
+            debug(ChatColor.YELLOW + "Generating legacy custom model data files...");
+            plugin.getModelDataGenerator().generateModelJsons(this::yieldToServer);
+            debug(ChatColor.GREEN + "✓ Legacy custom model data files generated");
+        }
+
+        debug(ChatColor.GREEN + "✓ Step 3 Complete: Pack files written");
+
+        // Send summary
+        message(ChatColor.GOLD + "=== Generation Complete ===");
+        message(ChatColor.GREEN + "Successfully processed " + ChatColor.YELLOW + successCount +
+                         ChatColor.GREEN + " models:");
+
+        if (helmetCount > 0) message(ChatColor.YELLOW + "- Helmets: " + ChatColor.WHITE + helmetCount);
+        if (backpackCount > 0) message(ChatColor.YELLOW + "- Backpacks: " + ChatColor.WHITE + backpackCount);
+        if (chestplateCount > 0) message(ChatColor.YELLOW + "- Chestplates: " + ChatColor.WHITE + chestplateCount);
+        if (leggingsCount > 0) message(ChatColor.YELLOW + "- Leggings: " + ChatColor.WHITE + leggingsCount);
+        if (bootsCount > 0) message(ChatColor.YELLOW + "- Boots: " + ChatColor.WHITE + bootsCount);
+        if (balloonCount > 0) message(ChatColor.YELLOW + "- Balloons: " + ChatColor.WHITE + balloonCount);
+        if (offhandCount > 0) message(ChatColor.YELLOW + "- Offhand Items: " + ChatColor.WHITE + offhandCount);
+        if (otherCount > 0) message(ChatColor.YELLOW + "- Other: " + ChatColor.WHITE + otherCount);
+
+        // Show saved files
+        message(ChatColor.GOLD + "Saved to files:");
+        for (Map.Entry<String, Integer> entry : processedCounts.entrySet()) {
+            message(ChatColor.YELLOW + "- " + entry.getKey() + ".yml: " +
+                             ChatColor.WHITE + entry.getValue() + " items");
+        }
+
+        yieldToServer();
+
+        // Copy the generated pack to the transfer-to-path if specified
+        // MOVED TO END: This ensures all files including firstperson namespace items are copied
+        // Use the correct transfer method that uses 'resource-pack.transfer-to-path' config
+        PackUtils.copyResourcePackToExternalPath(this::yieldToServer);
+        // Note: copyResourcePackToExternalPath() handles its own success/failure messaging
+
+        message(ChatColor.GREEN + "All cosmetics have been processed and saved successfully!");
+        message(ChatColor.GREEN + "Please reinstall the Resource Pack.");
+    }
+
+    /**
+     * Builds the fingerprint of every main model and decides which ones can be reused from the previous output
+     * @return One result per main model, in the iteration order of mainModels
+     */
+    private List<ConversionResult> fingerprintModels(Map<String, File> mainModels, Map<String, File> firstpersonModels,
+                                                     BuildManifest previousManifest, File namespaceDir, boolean incremental) {
+        String settings = settingsFingerprint();
+        List<ConversionResult> results = new ArrayList<>(mainModels.size());
+        int reusedCount = 0;
+
+        for (Map.Entry<String, File> entry : mainModels.entrySet()) {
+            checkCancelled();
+            ConversionResult result = new ConversionResult(entry.getKey(), entry.getValue(), firstpersonModels.get(entry.getKey()));
+            results.add(result);
+
+            BuildManifest.Entry previous = previousManifest.get(result.modelName);
+            try {
+                BuildManifest.Entry fingerprint = new BuildManifest.Entry();
+                fingerprint.setSource(previous == null
+                    ? BuildManifest.hashSource(result.bbmodelFile, null, 0, 0)
+                    : BuildManifest.hashSource(result.bbmodelFile, previous.getSource(), previous.getSourceSize(), previous.getSourceModified()),
+                    result.bbmodelFile);
+                if (result.firstpersonFile != null) {
+                    fingerprint.setFirstpersonSource(previous == null
+                        ? BuildManifest.hashSource(result.firstpersonFile, null, 0, 0)
+                        : BuildManifest.hashSource(result.firstpersonFile, previous.getFirstpersonSource(), previous.getFirstpersonSize(), previous.getFirstpersonModified()),
+                        result.firstpersonFile);
+                }
+                fingerprint.setOverrides(overrideFingerprint(result.modelName, result.firstpersonFile != null));
+                fingerprint.setSettings(settings);
+                result.fingerprint = fingerprint;
+            } catch (IOException e) {
+                result.error = e;
+                continue;
+            }
+
+            if (incremental && result.fingerprint.hasSameFingerprint(previous) && outputsExist(namespaceDir, previous)) {
+                result.reused = previous;
+                reusedCount++;
+            }
+        }
+
+        if (incremental) {
+            message(ChatColor.GRAY + "  " + reusedCount + " unchanged model(s) reused, " + (results.size() - reusedCount) + " to convert");
+        }
+        return results;
+    }
+
+    /**
+     * Fingerprint of the settings that change converted model or texture files
+     */
+    private String settingsFingerprint() {
+        return BuildManifest.hash("converter=" + CONVERTER_VERSION + ";namespace=" + configManager.getNamespace()
+            + ";" + conversionOptions.fingerprint());
+    }
+
+    /**
+     * Fingerprint of the display overrides of a model and its firstperson variant
+     */
+    private String overrideFingerprint(String modelName, boolean hasFirstperson) {
+        return plugin.getDataManager().getOverridesHash(modelName, hasFirstperson);
+    }
+
+    /**
+     * @return true if every file the previous run generated for a model is still present
+     */
+    private boolean outputsExist(File namespaceDir, BuildManifest.Entry entry) {
+        if (entry.getOutputs().isEmpty()) {
+            return false;
+        }
+        for (String output : entry.getOutputs()) {
+            if (!new File(namespaceDir, output).isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the files generated for a converted model: model JSON, item definition and referenced textures
+     * @param namespaceDir The assets/&lt;namespace&gt; directory of the local output
+     * @param modelName The model file name without .json
+     * @param model The converted model JSON
+     * @param outputs The list to add the paths to, relative to namespaceDir
+     */
+    private void collectOutputs(File namespaceDir, String modelName, JsonObject model, List<String> outputs) {
+        Set<String> candidates = new LinkedHashSet<>();
+        candidates.add("models/item/" + modelName + ".json");
+        candidates.add("items/" + modelName.toLowerCase() + ".json");
+
+        String texturePrefix = configManager.getNamespace() + ":item/";
+        if (model.has("textures") && model.get("textures").isJsonObject()) {
+            for (Map.Entry<String, JsonElement> texture : model.getAsJsonObject("textures").entrySet()) {
+                String path = texture.getValue().getAsString();
+                if (path.startsWith(texturePrefix)) {
+                    String baseName = path.substring(texturePrefix.length());
+                    candidates.add("textures/item/" + baseName + ".png");
+                    candidates.add("textures/item/" + baseName + ".png.mcmeta");
+                }
+            }
+        }
+
+        for (String candidate : candidates) {
+            if (!outputs.contains(candidate) && new File(namespaceDir, candidate).isFile()) {
+                outputs.add(candidate);
+            }
+        }
+    }
+
+    /**
+     * Deletes generated files that no model in the manifest owns anymore (removed, renamed or failed models)
+     * @param namespaceDir The assets/&lt;namespace&gt; directory of the local output
+     * @param manifest The manifest of this run
+     */
+    private void sweepStaleOutputs(File namespaceDir, BuildManifest manifest) {
+        Set<String> liveOutputs = new HashSet<>();
+        for (BuildManifest.Entry entry : manifest.getEntries()) {
+            liveOutputs.addAll(entry.getOutputs());
+        }
+
+        int deleted = 0;
+        for (String directory : OUTPUT_DIRECTORIES) {
+            File[] files = new File(namespaceDir, directory).listFiles(File::isFile);
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (!liveOutputs.contains(directory + "/" + file.getName()) && file.delete()) {
+                    deleted++;
+                }
+                yieldToServer();
+            }
+        }
+
+        if (deleted > 0) {
+            debug(ChatColor.GRAY + "  Removed " + deleted + " stale output file(s)");
+        }
+    }
+
+    /**
+     * Submits the conversion of every changed model to the worker pool
+     * Each worker only touches its own input files, shared state is left for the merge stage
+     * @param results The fingerprinted models, reused and failed ones are not submitted
+     */
+    private void submitConversions(ForkJoinPool pool, List<ConversionResult> results, String texturesPath) {
+        int total = (int) results.stream().filter(result -> result.reused == null && result.error == null).count();
+        AtomicInteger converted = new AtomicInteger();
+        if (tickBudget != null) {
+            debug(ChatColor.GRAY + "Converting " + total + " models on one thread, merging in tick slices of "
+                + configManager.getTickBudgetMillis() + "ms");
+        } else {
+            debug(ChatColor.GRAY + "Converting " + total + " models on " + pool.getParallelism() + " worker thread(s)");
+        }
+
+        for (ConversionResult result : results) {
+            if (result.reused != null || result.error != null) {
+                continue;
+            }
+            Runnable conversion = () -> {
+                convertModel(result, texturesPath);
+                reportProgress(converted.incrementAndGet(), total);
+            };
+            result.future = pool.submit(conversion);
+        }
+    }
+
+    /**
+     * Sends every model that needs converting to the worker process
+     * If the worker cannot be started, every one of those models fails with the reason.
+     */
+    private void submitToWorker(ConversionWorkerClient worker, List<ConversionResult> results, String texturesPath) {
+        Map<String, File[]> models = new LinkedHashMap<>();
+        for (ConversionResult result : results) {
+            if (result.reused == null && result.error == null) {
+                models.put(result.modelName, new File[]{result.bbmodelFile, result.firstpersonFile});
+            }
+        }
+        if (models.isEmpty()) {
+            return;
+        }
+
+        int total = models.size();
+        AtomicInteger converted = new AtomicInteger();
+        debug(ChatColor.GRAY + "Converting " + total + " models in a worker process (" + configManager.getWorkerHeapMb() + "MB heap)");
+        Map<String, CompletableFuture<ConversionWorkerClient.Reply>> replies;
+        try {
+            replies = worker.start(models, texturesPath, configManager.getNamespace(), conversionOptions,
+                () -> reportProgress(converted.incrementAndGet(), total));
+        } catch (IOException e) {
+            message(ChatColor.RED + "Could not start the conversion worker: " + e.getMessage());
+            plugin.getLogger().severe("Could not start the conversion worker: " + e.getMessage());
+            for (ConversionResult result : results) {
+                if (models.containsKey(result.modelName)) {
+                    result.error = e;
+                }
+            }
+            return;
+        }
+        for (ConversionResult result : results) {
+            result.workerReply = replies.get(result.modelName);
+        }
+    }
+
+    /**
+     * Waits for a submitted conversion to finish
+     * Unexpected worker failures are recorded on the result, cancellation is rethrown
+     */
+    private void awaitConversion(ConversionResult result) {
+        if (result.workerReply != null) {
+            CompletableFuture<ConversionWorkerClient.Reply> reply = result.workerReply;
+            result.workerReply = null;
+            try {
+                // Only this model's trees are read back onto the server heap
+                ConversionWorkerClient.Reply converted = awaitWithinBudget(reply);
+                result.model = converted.loadModel();
+                result.firstpersonModel = converted.loadFirstpersonModel();
+            } catch (ExecutionException e) {
+                result.error = e.getCause();
+            } catch (IOException e) {
+                result.error = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            }
+            return;
+        }
+        if (result.future == null) {
+            return;
+        }
+        try {
+            awaitWithinBudget(result.future);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            result.error = e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Waits for every conversion and packs the small textures of the converted models into atlas sheets
+     * Reused models keep pointing at the sheets of their own run. A failed atlas leaves the models unchanged.
+     */
+    private void packAtlas(List<ConversionResult> results, String texturesPath) {
+        TextureAtlas atlas = new TextureAtlas(Paths.get(texturesPath), configManager.getNamespace(), conversionOptions);
+        try {
+            for (ConversionResult result : results) {
+                checkCancelled();
+                awaitConversion(result);
+                if (result.error != null || result.model == null) {
+                    continue;
+                }
+                atlas.add(result.model.getJson());
+                if (result.firstpersonModel != null) {
+                    atlas.add(result.firstpersonModel.getJson());
+                }
+            }
+
+            checkCancelled();
+            atlas.pack(this::checkCancelled);
+            if (atlas.getTextureCount() > 0) {
+                message(ChatColor.GRAY + "  Packed " + atlas.getTextureCount() + " texture(s) of " + atlas.getModelCount()
+                    + " model(s) into " + atlas.getSheetCount() + " atlas sheet(s)");
+            }
+        } catch (IOException e) {
+            message(ChatColor.YELLOW + "Texture atlas skipped: " + e.getMessage());
+            plugin.getLogger().warning("Failed to pack texture atlas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Converts one model and its firstperson variant into memory, recording any failure on the result
+     */
+    private void convertModel(ConversionResult result, String texturesPath) {
+        // Runs on a pool thread, which never holds a tick slice
+        if (cancelled.get()) {
+            throw new CancellationException();
+        }
+        try {
+            result.model = BBModelToJsonConvert.convert(
+                result.bbmodelFile.getAbsolutePath(),
+                result.modelName,
+                texturesPath,
+                configManager.getNamespace(),
+                conversionOptions
+            );
+
+            // Convert firstperson model too
+            if (result.firstpersonFile != null) {
+                debug(ChatColor.GREEN + "Processing " + result.modelName + " with firstperson variant");
+                result.firstpersonModel = BBModelToJsonConvert.convert(
+                    result.firstpersonFile.getAbsolutePath(),
+                    result.modelName + "_firstperson",
+                    texturesPath,
+                    configManager.getNamespace(),
+                    conversionOptions
+                );
+            }
+        } catch (Exception e) {
+            result.error = e;
+        }
+    }
+
+    /**
+     * Logs what the geometry optimizer removed from a model, and sends it to the sender in debug mode
+     */
+    private void reportGeometry(String modelName, ConvertedModel model) {
+        GeometryOptimizer.Result geometry = model.getGeometry();
+        if (geometry == null || (geometry.getRemovedElements() == 0 && geometry.getRemovedFaces() == 0)) {
+            return;
+        }
+        String line = "Optimized " + modelName + ": removed " + geometry.getRemovedElements() + " element(s) and "
+            + geometry.getRemovedFaces() + " face(s)";
+        plugin.getLogger().info(line);
+        debug(ChatColor.GRAY + "  " + line);
+    }
+
+    /**
+     * Sends a progress line roughly every 10% so large packs don't flood the chat
+     */
+    private void reportProgress(int done, int total) {
+        int step = Math.max(1, total / 10);
+        if (done > 0 && done % step == 0) {
+            message(ChatColor.GRAY + "  Converted: " + done + "/" + total + " models (" + (done * 100 / total) + "%)");
+        }
+    }
+
+    /**
+     * Waits for a conversion running on a pool thread or in the worker process
+     * In tick-budget mode the main thread is parked while the job runs, so the job only waits for the rest of
+     * its slice and then yields, the server keeps ticking while the conversion is busy.
+     */
+    private <T> T awaitWithinBudget(Future<T> future) throws ExecutionException, InterruptedException {
+        if (tickBudget == null) {
+            return future.get();
+        }
+        while (true) {
+            try {
+                return future.get(tickBudget.remainingNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                checkCancelled();
+            }
+        }
+    }
+
+    /**
+     * Yields to the server once the slice is used up in tick-budget mode, never cancels
+     * Used in the commit phase, where stopping between two files would leave the output half written.
+     */
+    private void yieldToServer() {
+        if (tickBudget != null) {
+            tickBudget.checkpoint();
+        }
+    }
+
+    /**
+     * Throws if cancellation was requested, unwinding the job at a safe point
+     * In tick-budget mode this is also where the job yields to the server once its slice is used up.
+     */
+    private void checkCancelled() {
+        if (tickBudget != null) {
+            tickBudget.checkpoint();
+        }
+        if (cancelled.get()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Sends a message to every sender of the run on the main thread
+     */
+    private void message(String message) {
+        if (!plugin.isEnabled()) {
+            plugin.getLogger().info(ChatColor.stripColor(message));
+            return;
+        }
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            for (CommandSender sender : senders) {
+                sender.sendMessage(message);
+            }
+        });
+    }
+
+    /**
+     * Sends a debug message to the senders on the main thread if debug mode is enabled
+     */
+    private void debug(String message) {
+        if (configManager.isDebugMode()) {
+            message(message);
+        }
+    }
+
+    /**
+     * Outcome of converting one main model (and its firstperson variant)
+     */
+    private static final class ConversionResult {
+        private final String modelName;
+        private final File bbmodelFile;
+        private final File firstpersonFile;
+        private Future<?> future;
+        // Reply of the worker process when it converts the model
+        private CompletableFuture<ConversionWorkerClient.Reply> workerReply;
+        // Fingerprint of this run, stored in the manifest once the model is merged
+        private BuildManifest.Entry fingerprint;
+        // Previous manifest entry when the model is unchanged and not converted again
+        private BuildManifest.Entry reused;
+        // Written by the worker, read by the merge stage after future.get()
+        private ConvertedModel model;
+        private ConvertedModel firstpersonModel;
+        private Throwable error;
+
+        private ConversionResult(String modelName, File bbmodelFile, File firstpersonFile) {
+            this.modelName = modelName;
+            this.bbmodelFile = bbmodelFile;
+            this.firstpersonFile = firstpersonFile;
+        }
+    }
+
+    /**
+     * Checks if a model filename contains a valid cosmetic type
+     * @param fileName The filename without .bbmodel extension
+     * @return true if the filename contains a supported cosmetic type
+     */
+    private boolean isValidCosmeticModel(String fileName) {
+        // Remove _firstperson suffix for validation
+        String baseName = fileName.replace("_firstperson", "");
+        String[] nameParts = baseName.split("_");
+
+        for (String part : nameParts) {
+            if (SUPPORTED_COSMETIC_TYPES.contains(part.toUpperCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cleans up old files before generation to ensure fresh start
+     * @param localOutputDir The local output directory to clean
+     * @param deleteOutput false to keep the output directory for an incremental run
+     */
+    private void cleanupOldFiles(File localOutputDir, boolean deleteOutput) {
+        try {
+            // Delete old LOCAL output directory (plugin's own directory)
+            if (deleteOutput && localOutputDir.exists()) {
+                message(ChatColor.YELLOW + "  → Deleting old local output directory...");
+                deleteDirectory(localOutputDir);
+                message(ChatColor.GREEN + "  ✓ Deleted old local output directory");
+            }
+
+            // Delete old cosmetic YML files
+            File cosmeticsDir = new File(plugin.getDataFolder(), "cosmetics");
+            if (cosmeticsDir.exists()) {
+                message(ChatColor.YELLOW + "  → Deleting old cosmetic YML files...");
+                deleteDirectory(cosmeticsDir);
+                message(ChatColor.GREEN + "  ✓ Deleted old cosmetic YML files");
+            }
+
+            message(ChatColor.GREEN + "✓ Step 1 Complete: Plugin directories cleaned");
+            message(ChatColor.GRAY + "  (Custom output path left untouched for safety)");
+
+        } catch (Exception e) {
+            message(ChatColor.RED + "Error cleaning up old files: " + e.getMessage());
+            plugin.getLogger().severe("Error cleaning up old files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recursively deletes a directory and all its contents, yielding to the server between files
+     * @param directory The directory to delete
+     * @throws IOException If the directory could not be deleted completely
+     */
+    private void deleteDirectory(File directory) throws IOException {
+        if (!FileUtils.deleteDirectory(directory, this::yieldToServer)) {
+            throw new IOException("Could not delete " + directory.getPath());
+        }
+    }
+}
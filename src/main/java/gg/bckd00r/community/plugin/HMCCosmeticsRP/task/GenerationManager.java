@@ -0,0 +1,168 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.task;
+
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.HMCCosmeticsPackPlugin;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the generation executor and the currently running {@link GenerationJob}
+ * At most one job runs at a time, it is the only writer of the output directory and the custom model data
+ * registry. Requests made while a job runs are merged into one follow-up job that starts when it ends:
+ * the running job may already have read the input the requester just changed, so it cannot answer them.
+ */
+public class GenerationManager {
+    private final HMCCosmeticsPackPlugin plugin;
+    private final ExecutorService executor;
+    private volatile GenerationJob currentJob;
+    // Requests waiting for the running job to end, guarded by this
+    private final Set<CommandSender> pendingSenders = new LinkedHashSet<>();
+    private boolean pendingFullRebuild;
+
+    public GenerationManager(HMCCosmeticsPackPlugin plugin) {
+        this.plugin = plugin;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "HMCPack-Generation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a generation job in the background, or queues the request behind the running one
+     * Must be called from the main thread, plugin lookups happen here before the job is handed off
+     * @param sender The sender requesting the generation, receives the progress of the job that covers the request
+     * @param fullRebuild true to convert every model even if it is unchanged since the last run
+     * @return true if a job was started, false if the request joined the follow-up job
+     */
+    public synchronized boolean start(CommandSender sender, boolean fullRebuild) {
+        pendingSenders.add(sender);
+        pendingFullRebuild |= fullRebuild;
+        if (currentJob != null) {
+            sender.sendMessage(ChatColor.YELLOW + "A generation is already running, your request will run right after it"
+                + (pendingSenders.size() > 1 ? " together with " + (pendingSenders.size() - 1) + " other request(s)" : "")
+                + ". Use '/hmcpack generate cancel' to stop both.");
+            return false;
+        }
+        startPending();
+        return true;
+    }
+
+    /**
+     * Starts one job for every queued request, run on the main thread
+     */
+    private synchronized void startPending() {
+        if (currentJob != null || pendingSenders.isEmpty()) {
+            return;
+        }
+        List<CommandSender> senders = new ArrayList<>(pendingSenders);
+        boolean fullRebuild = pendingFullRebuild;
+        pendingSenders.clear();
+        pendingFullRebuild = false;
+
+        Plugin hmcPlugin = plugin.getServer().getPluginManager().getPlugin("HMCCosmetics");
+        GenerationJob job = new GenerationJob(plugin, senders, hmcPlugin, fullRebuild);
+        currentJob = job;
+
+        for (CommandSender sender : senders) {
+            sender.sendMessage(ChatColor.GRAY + "Generation started in the background, progress will be reported here.");
+        }
+        executor.execute(() -> {
+            try {
+                job.run();
+            } finally {
+                synchronized (this) {
+                    if (currentJob == job) {
+                        currentJob = null;
+                    }
+                    if (!pendingSenders.isEmpty() && plugin.isEnabled()) {
+                        plugin.getServer().getScheduler().runTask(plugin, this::startPending);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Requests cancellation of the running job
+     * @param sender The sender requesting the cancellation
+     * @return true if a running job was asked to stop
+     */
+    public synchronized boolean cancel(CommandSender sender) {
+        GenerationJob job = currentJob;
+        if (job == null) {
+            if (!pendingSenders.isEmpty()) {
+                // Between the end of a job and the start of its follow-up
+                dropPending(sender);
+                sender.sendMessage(ChatColor.YELLOW + "The queued generation was cancelled.");
+                return true;
+            }
+            sender.sendMessage(ChatColor.YELLOW + "No generation is currently running.");
+            return false;
+        }
+
+        job.cancel();
+        int queued = dropPending(sender);
+        sender.sendMessage(ChatColor.YELLOW + "Cancelling generation, it will stop after the current model..."
+            + (queued > 0 ? " The queued follow-up generation (" + queued + " request(s)) was dropped." : ""));
+        return true;
+    }
+
+    /**
+     * Clears the queued follow-up and tells every other requester in it that it will not run
+     * @param canceller The sender who cancelled, told separately by the caller
+     * @return The number of dropped requests
+     */
+    private int dropPending(CommandSender canceller) {
+        int dropped = pendingSenders.size();
+        for (CommandSender queued : pendingSenders) {
+            if (queued != canceller) {
+                queued.sendMessage(ChatColor.YELLOW + "Your queued generation was cancelled by " + canceller.getName()
+                    + ", run '/hmcpack generate' again if it is still needed.");
+            }
+        }
+        pendingSenders.clear();
+        pendingFullRebuild = false;
+        return dropped;
+    }
+
+    /**
+     * @return true if a generation job is running, or queued to start once the running one has ended
+     */
+    public synchronized boolean isRunning() {
+        return currentJob != null || !pendingSenders.isEmpty();
+    }
+
+    /**
+     * Cancels any running job and stops the executor, waiting briefly for it to finish
+     */
+    public void shutdown() {
+        synchronized (this) {
+            pendingSenders.clear();
+        }
+        GenerationJob job = currentJob;
+        if (job != null) {
+            job.cancel();
+            // The server no longer ticks, a tick-budget job would wait forever for its next slice
+            job.releaseTickBudget();
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Generation did not stop in time, forcing shutdown");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
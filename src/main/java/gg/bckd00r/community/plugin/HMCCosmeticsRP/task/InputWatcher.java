@@ -0,0 +1,179 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.task;
+
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.HMCCosmeticsPackPlugin;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the input directory and starts a generation once a burst of .bbmodel changes has settled.
+ * The generation is incremental, so only the changed models and their firstperson pairs are converted again.
+ */
+public class InputWatcher {
+    private final HMCCosmeticsPackPlugin plugin;
+    private volatile WatchService watchService;
+    private volatile CommandSender sender;
+    private Thread thread;
+
+    public InputWatcher(HMCCosmeticsPackPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Starts watching the input directory
+     * @param sender The sender that receives change and generation messages
+     * @return true if the watcher was started, false if it was already running or could not be started
+     */
+    public synchronized boolean start(CommandSender sender) {
+        if (isRunning()) {
+            sender.sendMessage(ChatColor.YELLOW + "Watch mode is already enabled. Use '/hmcpack watch' again to disable it.");
+            return false;
+        }
+
+        File inputDir = new File(plugin.getDataFolder(), "input");
+        if (!inputDir.exists() && !inputDir.mkdirs()) {
+            sender.sendMessage(ChatColor.RED + "Failed to create input directory: " + inputDir.getAbsolutePath());
+            return false;
+        }
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            inputDir.toPath().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            sender.sendMessage(ChatColor.RED + "Failed to watch input directory: " + e.getMessage());
+            plugin.getLogger().severe("Failed to watch input directory: " + e.getMessage());
+            closeWatchService();
+            return false;
+        }
+
+        this.sender = sender;
+        WatchService service = watchService;
+        thread = new Thread(() -> watch(service), "HMCPack-Watcher");
+        thread.setDaemon(true);
+        thread.start();
+
+        sender.sendMessage(ChatColor.GREEN + "Watch mode enabled, changes in " + inputDir.getAbsolutePath() + " are rebuilt automatically.");
+        return true;
+    }
+
+    /**
+     * Stops watching the input directory, pending changes are dropped
+     */
+    public synchronized void stop() {
+        closeWatchService();
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * @return true if the input directory is being watched
+     */
+    public boolean isRunning() {
+        return watchService != null;
+    }
+
+    private void watch(WatchService service) {
+        Set<String> pending = new TreeSet<>();
+        long lastChange = 0;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long debounceMillis = plugin.getConfigManager().getWatchDebounceMillis();
+                WatchKey key = service.poll(pending.isEmpty() ? 1000 : Math.min(debounceMillis, 250), TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // Events were lost, the manifest will still find every changed model
+                            pending.add("*");
+                        } else {
+                            String fileName = ((Path) event.context()).getFileName().toString();
+                            if (fileName.toLowerCase().endsWith(".bbmodel")) {
+                                pending.add(fileName);
+                            }
+                        }
+                    }
+                    lastChange = System.currentTimeMillis();
+                    if (!key.reset()) {
+                        message(ChatColor.RED + "Input directory is no longer accessible, watch mode disabled.");
+                        break;
+                    }
+                    continue;
+                }
+
+                // Wait until the burst has settled and no generation is running
+                if (pending.isEmpty() || System.currentTimeMillis() - lastChange < debounceMillis
+                        || plugin.getGenerationManager().isRunning()) {
+                    continue;
+                }
+
+                Set<String> changed = pending;
+                pending = new TreeSet<>();
+                triggerGeneration(changed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Stopped
+        } finally {
+            synchronized (this) {
+                if (watchService == service) {
+                    closeWatchService();
+                }
+            }
+        }
+    }
+
+    private void triggerGeneration(Set<String> changed) {
+        changed.remove("*");
+        String summary = changed.isEmpty() ? "input directory" : changed.size() + " file(s): " + String.join(", ", changed);
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            CommandSender target = sender;
+            if (target == null || !isRunning()) {
+                return;
+            }
+            target.sendMessage(ChatColor.AQUA + "Detected changes in " + summary);
+            plugin.getGenerationManager().start(target, false);
+        });
+    }
+
+    /**
+     * Sends a message to the watching sender on the main thread
+     */
+    private void message(String message) {
+        CommandSender target = sender;
+        if (target == null || !plugin.isEnabled()) {
+            return;
+        }
+        plugin.getServer().getScheduler().runTask(plugin, () -> target.sendMessage(message));
+    }
+
+    private void closeWatchService() {
+        WatchService service = watchService;
+        watchService = null;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to close input watcher: " + e.getMessage());
+            }
+        }
+    }
+}
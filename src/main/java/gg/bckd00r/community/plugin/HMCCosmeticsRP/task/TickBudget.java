@@ -0,0 +1,102 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.task;
+
+import gg.bckd00r.community.plugin.HMCCosmeticsRP.HMCCosmeticsPackPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets a generation job run in time slices of the server tick instead of next to it
+ * Once per tick the main thread hands control to the job and waits until the job yields at its next safe
+ * point after the budget is used up, the server keeps the rest of every tick. A single step can still run
+ * past the budget. The job still runs on its own thread, so it must keep off the Bukkit API like an async
+ * job and send messages through the scheduler, as {@link GenerationJob} does.
+ */
+public class TickBudget {
+    private final HMCCosmeticsPackPlugin plugin;
+    private final long budgetNanos;
+    // Permit held while it is the job's turn, and the one held while it is the main thread's turn
+    private final Semaphore jobTurn = new Semaphore(0);
+    private final Semaphore mainTurn = new Semaphore(0);
+    private volatile boolean closed;
+    private BukkitTask task;
+    private long sliceStart;
+
+    /**
+     * @param plugin The plugin instance
+     * @param budgetMillis How long the job may run per tick
+     */
+    public TickBudget(HMCCosmeticsPackPlugin plugin, int budgetMillis) {
+        this.plugin = plugin;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    /**
+     * Called by the job thread before its first step, waits for the first slice
+     */
+    public void begin() {
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        awaitTurn();
+    }
+
+    /**
+     * Called by the job thread at safe points, yields to the server when the slice is used up
+     */
+    public void checkpoint() {
+        if (closed || System.nanoTime() - sliceStart < budgetNanos) {
+            return;
+        }
+        mainTurn.release();
+        awaitTurn();
+    }
+
+    /**
+     * @return How much of the current slice is left, 0 once the job should yield, unbounded once closed
+     */
+    public long remainingNanos() {
+        if (closed) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0L, budgetNanos - (System.nanoTime() - sliceStart));
+    }
+
+    /**
+     * Called by the job thread when it is done, gives the current tick back and stops the timer
+     */
+    public void finish() {
+        close();
+        mainTurn.release();
+    }
+
+    /**
+     * Stops gating the job, it runs freely to its end. Used when the server can no longer tick,
+     * e.g. while the plugin is being disabled.
+     */
+    public void close() {
+        closed = true;
+        jobTurn.release();
+        BukkitTask current = task;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    private void awaitTurn() {
+        if (!closed) {
+            jobTurn.acquireUninterruptibly();
+        }
+        sliceStart = System.nanoTime();
+    }
+
+    /**
+     * Main thread: one slice per tick
+     */
+    private void tick() {
+        if (closed) {
+            return;
+        }
+        jobTurn.release();
+        mainTurn.acquireUninterruptibly();
+    }
+}
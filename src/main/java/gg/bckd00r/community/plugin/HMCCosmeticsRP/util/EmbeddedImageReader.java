@@ -0,0 +1,285 @@
+package gg.bckd00r.community.plugin.HMCCosmeticsRP.util;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reader for .bbmodel JSON that pulls embedded PNG data URIs out of the character stream.
+ * Every "data:image/png;base64,..." string is decoded in chunks straight into a temp file, the JSON parser only
+ * sees a short placeholder that {@link #claim(String)} resolves to that file. The SHA-256 of the decoded bytes is
+ * computed on the way. Memory use does not depend on the texture size. Invalid base64 data is dropped and
+ * replaced by an empty string.
+ */
+public class EmbeddedImageReader extends FilterReader {
+    public static final String PLACEHOLDER_PREFIX = "hmcpack-embedded-image:";
+
+    private static final String DATA_URI_PREFIX = "data:image/png;base64,";
+    private static final int BASE64_CHUNK = 64 * 1024; // multiple of 4, decoded in whole quads
+
+    private enum State { OUTSIDE, PREFIX, STRING, IMAGE }
+
+    private final Path tempDir;
+    private final Map<String, ExtractedImage> extracted = new HashMap<>();
+    private int extractedCount;
+    private final char[] inBuffer = new char[8192];
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingPos;
+
+    private State state = State.OUTSIDE;
+    private boolean escaped;
+    private final StringBuilder prefix = new StringBuilder();
+
+    // Current image, reused buffers so every texture costs the same memory
+    private final byte[] base64 = new byte[BASE64_CHUNK];
+    private final byte[] decoded = new byte[BASE64_CHUNK / 4 * 3];
+    private final Base64.Decoder decoder = Base64.getDecoder();
+    private final MessageDigest digest;
+    private int base64Length;
+    private Path imageFile;
+    private FileChannel imageChannel;
+    private boolean imageInvalid;
+
+    /**
+     * @param in The .bbmodel JSON
+     * @param tempDir Where extracted images are written, ideally the directory they are moved to afterwards
+     */
+    public EmbeddedImageReader(Reader in, Path tempDir) {
+        super(in);
+        this.tempDir = tempDir;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Takes ownership of an extracted image
+     * @param placeholder The string the parser saw in place of the data URI
+     * @return The decoded PNG, or null if the string is not a known placeholder
+     */
+    public ExtractedImage claim(String placeholder) {
+        return extracted.remove(placeholder);
+    }
+
+    @Override
+    public int read() throws IOException {
+        char[] single = new char[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (pendingPos == pending.length()) {
+            pending.setLength(0);
+            pendingPos = 0;
+            int n = in.read(inBuffer, 0, inBuffer.length);
+            if (n == -1) {
+                if (state == State.IMAGE) {
+                    // Truncated file, the parser reports the unterminated string
+                    abortImage();
+                }
+                if (state == State.PREFIX) {
+                    pending.append(prefix);
+                    prefix.setLength(0);
+                    state = State.STRING;
+                    continue;
+                }
+                return -1;
+            }
+            for (int i = 0; i < n; i++) {
+                process(inBuffer[i]);
+            }
+        }
+
+        int count = Math.min(len, pending.length() - pendingPos);
+        pending.getChars(pendingPos, pendingPos + count, cbuf, off);
+        pendingPos += count;
+        return count;
+    }
+
+    private void process(char c) throws IOException {
+        switch (state) {
+            case OUTSIDE:
+                pending.append(c);
+                if (c == '"') {
+                    state = State.PREFIX;
+                    prefix.setLength(0);
+                }
+                break;
+
+            case PREFIX:
+                if (c == DATA_URI_PREFIX.charAt(prefix.length())) {
+                    prefix.append(c);
+                    if (prefix.length() == DATA_URI_PREFIX.length()) {
+                        startImage();
+                    }
+                    break;
+                }
+                // Not an image, hand the collected characters through and continue as a normal string
+                pending.append(prefix);
+                prefix.setLength(0);
+                state = State.STRING;
+                escaped = false;
+                process(c);
+                break;
+
+            case STRING:
+                pending.append(c);
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    state = State.OUTSIDE;
+                }
+                break;
+
+            case IMAGE:
+                if (escaped) {
+                    // "\/" is a valid JSON escape for the base64 '/'
+                    escaped = false;
+                    if (c == '/') {
+                        appendBase64(c);
+                    }
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    finishImage();
+                    pending.append('"');
+                    state = State.OUTSIDE;
+                } else if (!Character.isWhitespace(c)) {
+                    appendBase64(c);
+                }
+                break;
+        }
+    }
+
+    private void startImage() throws IOException {
+        state = State.IMAGE;
+        escaped = false;
+        base64Length = 0;
+        imageInvalid = false;
+        digest.reset();
+        imageFile = Files.createTempFile(tempDir, "embedded", ".tmp");
+        imageChannel = FileChannel.open(imageFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private void appendBase64(char c) throws IOException {
+        if (imageInvalid) {
+            return;
+        }
+        base64[base64Length++] = (byte) c;
+        if (base64Length == base64.length) {
+            flushBase64();
+        }
+    }
+
+    private void flushBase64() throws IOException {
+        try {
+            // Only the last, partial chunk of an image needs a copy of its exact length
+            byte[] chunk = base64Length == base64.length ? base64 : Arrays.copyOf(base64, base64Length);
+            int length = decoder.decode(chunk, decoded);
+            digest.update(decoded, 0, length);
+            ByteBuffer buffer = ByteBuffer.wrap(decoded, 0, length);
+            while (buffer.hasRemaining()) {
+                imageChannel.write(buffer);
+            }
+        } catch (IllegalArgumentException e) {
+            // Skip invalid base64 data
+            imageInvalid = true;
+        }
+        base64Length = 0;
+    }
+
+    private void finishImage() throws IOException {
+        if (!imageInvalid && base64Length > 0) {
+            flushBase64();
+        }
+        imageChannel.close();
+        imageChannel = null;
+
+        if (imageInvalid) {
+            Files.deleteIfExists(imageFile);
+        } else {
+            String placeholder = PLACEHOLDER_PREFIX + extractedCount++;
+            extracted.put(placeholder, new ExtractedImage(imageFile, toHex(digest.digest())));
+            pending.append(placeholder);
+        }
+        imageFile = null;
+    }
+
+    private void abortImage() throws IOException {
+        if (imageChannel != null) {
+            imageChannel.close();
+            imageChannel = null;
+        }
+        if (imageFile != null) {
+            Files.deleteIfExists(imageFile);
+            imageFile = null;
+        }
+    }
+
+    /**
+     * Closes the underlying reader and deletes every extracted image that was not claimed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            abortImage();
+            for (ExtractedImage image : extracted.values()) {
+                Files.deleteIfExists(image.getFile());
+            }
+            extracted.clear();
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * A decoded image in a temp file, owned by whoever claimed it
+     */
+    public static class ExtractedImage {
+        private final Path file;
+        private final String sha256;
+
+        private ExtractedImage(Path file, String sha256) {
+            this.file = file;
+            this.sha256 = sha256;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * @return The SHA-256 of the decoded bytes as hex
+         */
+        public String getSha256() {
+            return sha256;
+        }
+    }
+}
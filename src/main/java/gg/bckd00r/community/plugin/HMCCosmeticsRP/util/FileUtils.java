@@ -11,6 +11,14 @@ public class FileUtils {
     
 
     public static void copyDirectory(File source, File target) throws IOException {
+        copyDirectory(source, target, () -> { });
+    }
+
+    /**
+     * Copies a directory recursively
+     * @param afterFile Run after every copied file, e.g. to yield to the server between files
+     */
+    public static void copyDirectory(File source, File target, Runnable afterFile) throws IOException {
         if (source.isDirectory()) {
             if (!target.exists()) {
                 if (!target.mkdirs()) {
@@ -23,7 +31,7 @@ public class FileUtils {
                 for (String fileName : files) {
                     File sourceFile = new File(source, fileName);
                     File targetFile = new File(target, fileName);
-                    copyDirectory(sourceFile, targetFile);
+                    copyDirectory(sourceFile, targetFile, afterFile);
                 }
             }
         } else {
@@ -35,6 +43,7 @@ public class FileUtils {
             }
 
             Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            afterFile.run();
         }
     }
     
@@ -42,14 +51,24 @@ public class FileUtils {
      * Deletes a directory recursively
      */
     public static boolean deleteDirectory(File directory) {
+        return deleteDirectory(directory, () -> { });
+    }
+
+    /**
+     * Deletes a directory recursively
+     * @param afterFile Run after every deleted file
+     */
+    public static boolean deleteDirectory(File directory, Runnable afterFile) {
         if (directory.isDirectory()) {
             File[] files = directory.listFiles();
             if (files != null) {
                 for (File file : files) {
-                    deleteDirectory(file);
+                    deleteDirectory(file, afterFile);
                 }
             }
         }
-        return directory.delete();
+        boolean deleted = directory.delete();
+        afterFile.run();
+        return deleted;
     }
 }